@@ -0,0 +1,132 @@
+package test.uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import uk.co.adeveloperabroad.BoundsProvider;
+import uk.co.adeveloperabroad.LayeredQuadTree;
+import uk.co.adeveloperabroad.PairCallback;
+
+public class LayeredQuadTreeTest {
+
+    LayeredQuadTree<Rectangle> layeredQuadTree;
+
+    Rectangle wall = new Rectangle(0.0f, 0.0f, 20.0f, 20.0f);
+    Rectangle wall2 = new Rectangle(10.0f, 10.0f, 20.0f, 20.0f);
+    Rectangle mover = new Rectangle(15.0f, 15.0f, 10.0f, 10.0f);
+    Rectangle mover2 = new Rectangle(18.0f, 18.0f, 10.0f, 10.0f);
+
+    // create new tree for every test.
+    @Before
+    public void setUp() {
+        Rectangle quadTreeSize = new Rectangle(0.0f, 0.0f, 100.0f, 100.0f);
+        layeredQuadTree = new LayeredQuadTree<Rectangle>(quadTreeSize, BoundsProvider.RECTANGLE);
+
+        Array<Rectangle> walls = new Array<Rectangle>();
+        walls.add(wall);
+        walls.add(wall2);
+        layeredQuadTree.buildStatic(walls);
+    }
+
+    @Test
+    public void testRetrieveQueriesBothLayers() {
+        layeredQuadTree.insert(mover);
+
+        Array<Rectangle> returnObjects = new Array<Rectangle>();
+        layeredQuadTree.retrieveFor(returnObjects, mover);
+        assertEquals(3, returnObjects.size);
+        assertEquals(wall, returnObjects.get(0));
+        assertEquals(wall2, returnObjects.get(1));
+        assertEquals(mover, returnObjects.get(2));
+    }
+
+    @Test
+    public void testPairsSkipStaticAgainstStatic() {
+        layeredQuadTree.insert(mover);
+        layeredQuadTree.insert(mover2);
+
+        final Array<Rectangle> pairs = new Array<Rectangle>();
+        PairCallback<Rectangle> callback = new PairCallback<Rectangle>() {
+            @Override
+            public void pair(Rectangle first, Rectangle second) {
+                pairs.add(first);
+                pairs.add(second);
+            }
+        };
+        layeredQuadTree.pairs(callback);
+
+        // mover with mover2, then each mover with both walls
+        assertEquals(10, pairs.size);
+        assertEquals(mover, pairs.get(0));
+        assertEquals(mover2, pairs.get(1));
+        for (int i = 2; i < pairs.size; i += 2) {
+            assertTrue(pairs.get(i) == mover || pairs.get(i) == mover2);
+            assertTrue(pairs.get(i + 1) == wall || pairs.get(i + 1) == wall2);
+        }
+
+        // next frame only the static tree is left
+        layeredQuadTree.clearDynamic();
+        pairs.clear();
+        layeredQuadTree.pairs(callback);
+        assertEquals(0, pairs.size);
+        assertEquals(2, layeredQuadTree.getStaticTree().objects.size);
+    }
+
+    @Test
+    public void testFrozenStaticTree() {
+        assertTrue(layeredQuadTree.isFrozen());
+
+        boolean thrown = false;
+        try {
+            layeredQuadTree.insertStatic(new Rectangle(50.0f, 50.0f, 5.0f, 5.0f));
+        }
+        catch (GdxRuntimeException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+        assertEquals(2, layeredQuadTree.getStaticTree().objects.size);
+    }
+
+    @Test
+    public void testBuildStaticWithLayers() {
+        int players = 1;
+        int walls = 2;
+        int ghosts = 4;
+
+        Rectangle quadTreeSize = new Rectangle(0.0f, 0.0f, 100.0f, 100.0f);
+        layeredQuadTree = new LayeredQuadTree<Rectangle>(quadTreeSize, BoundsProvider.RECTANGLE);
+
+        Array<Rectangle> statics = new Array<Rectangle>();
+        statics.add(wall);
+        statics.add(wall2);
+        // wall2 only stops players
+        layeredQuadTree.buildStatic(statics, IntArray.with(walls, walls), IntArray.with(-1, players));
+        assertTrue(layeredQuadTree.isFrozen());
+
+        // ghosts only collide with walls
+        layeredQuadTree.insert(mover, ghosts, walls);
+
+        Array<Rectangle> returnObjects = new Array<Rectangle>();
+        layeredQuadTree.retrieveFor(returnObjects, mover, ghosts, walls);
+        // not wall2, nor mover itself as ghosts don't hit ghosts
+        assertEquals(1, returnObjects.size);
+        assertEquals(wall, returnObjects.get(0));
+
+        boolean thrown = false;
+        try {
+            new LayeredQuadTree<Rectangle>(quadTreeSize, BoundsProvider.RECTANGLE)
+                    .buildStatic(statics, IntArray.with(walls), IntArray.with(-1));
+        }
+        catch (GdxRuntimeException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+    }
+}
@@ -0,0 +1,161 @@
+package test.uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import uk.co.adeveloperabroad.BoundsProvider;
+import uk.co.adeveloperabroad.PackedQuadTree;
+import uk.co.adeveloperabroad.PackedQuadTreeFile;
+import uk.co.adeveloperabroad.QuadTree;
+
+public class PackedQuadTreeTest {
+
+    QuadTree<Rectangle> quadTree;
+    Array<Rectangle> objects;
+
+    // create new quadtree for every test.
+    @Before
+    public void setUp() {
+        Rectangle quadTreeSize = new Rectangle(0.0f, 0.0f, 100.0f, 100.0f);
+        quadTree = new QuadTree<Rectangle>(1, quadTreeSize, BoundsProvider.RECTANGLE);
+        quadTree.MAX_OBJECTS = 2;
+        objects = new Array<Rectangle>();
+    }
+
+    @Test
+    public void testPackAndRetrieve() {
+        // same layout as QuadTreeTest.TestInsertThreeObjectsAndCentralObject
+        insert(new Rectangle(0.0f, 0.0f, 20.0f, 20.0f));
+        insert(new Rectangle(80.0f, 80.0f, 20.0f, 20.0f));
+        insert(new Rectangle(80.0f, 0.0f, 20.0f, 20.0f));
+        insert(new Rectangle(40.0f, 40.0f, 10.0f, 20.0f));
+
+        PackedQuadTree packed = new PackedQuadTree(PackedQuadTree.pack(quadTree, objects));
+        assertEquals(4, packed.size());
+
+        IntArray returnIds = new IntArray();
+        packed.retrieve(returnIds, new Rectangle(70.0f, 70.0f, 5.0f, 5.0f));
+        assertEquals(0, returnIds.size);
+
+        packed.retrieve(returnIds, new Rectangle(35.0f, 35.0f, 50.0f, 50.0f));
+        assertArrayEquals(new int[] {1, 3}, sorted(returnIds));
+
+        returnIds.clear();
+        packed.retrieve(returnIds, new Rectangle(0.0f, 0.0f, 100.0f, 100.0f));
+        assertArrayEquals(new int[] {0, 1, 2, 3}, sorted(returnIds));
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(3);
+        for (int i = 0; i < 300; i++) {
+            // some hang off the edge of the root
+            insert(new Rectangle(random.nextFloat() * 110.0f - 5.0f, random.nextFloat() * 110.0f - 5.0f,
+                    random.nextFloat() * 8.0f, random.nextFloat() * 8.0f));
+        }
+
+        // round trip through a plain byte array, as if read from a file
+        ByteBuffer packedBuffer = PackedQuadTree.pack(quadTree, objects);
+        byte[] bytes = new byte[packedBuffer.remaining()];
+        packedBuffer.get(bytes);
+        PackedQuadTree packed = new PackedQuadTree(ByteBuffer.wrap(bytes));
+        assertEquals(300, packed.size());
+
+        IntArray returnIds = new IntArray();
+        for (int query = 0; query < 50; query++) {
+            Rectangle area = new Rectangle(random.nextFloat() * 100.0f, random.nextFloat() * 100.0f,
+                    random.nextFloat() * 30.0f, random.nextFloat() * 30.0f);
+
+            IntArray expected = new IntArray();
+            for (int i = 0; i < objects.size; i++) {
+                Rectangle object = objects.get(i);
+                if (object.x <= area.x + area.width && object.x + object.width >= area.x
+                        && object.y <= area.y + area.height && object.y + object.height >= area.y) {
+                    expected.add(i);
+                }
+            }
+
+            returnIds.clear();
+            packed.retrieve(returnIds, area);
+            assertArrayEquals(sorted(expected), sorted(returnIds));
+        }
+    }
+
+    @Test
+    public void testWriteAndMap() throws IOException {
+        insert(new Rectangle(0.0f, 0.0f, 20.0f, 20.0f));
+        insert(new Rectangle(80.0f, 80.0f, 20.0f, 20.0f));
+        insert(new Rectangle(80.0f, 0.0f, 20.0f, 20.0f));
+        insert(new Rectangle(40.0f, 40.0f, 10.0f, 20.0f));
+
+        File file = File.createTempFile("quadtree", ".bin");
+        file.deleteOnExit();
+        FileHandle fileHandle = new FileHandle(file);
+        PackedQuadTreeFile.write(fileHandle, quadTree, objects);
+
+        PackedQuadTree packed = PackedQuadTreeFile.map(fileHandle);
+        assertEquals(4, packed.size());
+
+        IntArray returnIds = new IntArray();
+        packed.retrieve(returnIds, new Rectangle(35.0f, 35.0f, 50.0f, 50.0f));
+        assertArrayEquals(new int[] {1, 3}, sorted(returnIds));
+    }
+
+    @Test
+    public void testRejectsOtherData() {
+        assertRejected(ByteBuffer.allocate(16));
+
+        // too short for the header
+        assertRejected(ByteBuffer.allocate(0));
+        assertRejected(header(8).putInt(PackedQuadTree.MAGIC).putInt(PackedQuadTree.VERSION));
+
+        // negative counts, and counts whose size overflows an int
+        assertRejected(header(16).putInt(PackedQuadTree.MAGIC).putInt(PackedQuadTree.VERSION).putInt(-1).putInt(0));
+        assertRejected(header(16).putInt(PackedQuadTree.MAGIC).putInt(PackedQuadTree.VERSION).putInt(0).putInt(-1));
+        assertRejected(header(16).putInt(PackedQuadTree.MAGIC).putInt(PackedQuadTree.VERSION)
+                .putInt(Integer.MAX_VALUE).putInt(Integer.MAX_VALUE));
+    }
+
+    private static ByteBuffer header(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void assertRejected(ByteBuffer buffer) {
+        buffer.clear();
+        boolean thrown = false;
+        try {
+            new PackedQuadTree(buffer);
+        }
+        catch (GdxRuntimeException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+    }
+
+    private void insert(Rectangle object) {
+        objects.add(object);
+        quadTree.insert(object);
+    }
+
+    private static int[] sorted(IntArray ids) {
+        int[] result = ids.toArray();
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,180 @@
+package test.uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.IntArray;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import uk.co.adeveloperabroad.PointQuadTree;
+
+public class PointQuadTreeTest {
+
+    PointQuadTree pointQuadTree;
+
+    // create new tree for every test.
+    @Before
+    public void setUp() {
+        Rectangle quadTreeSize = new Rectangle(0.0f, 0.0f, 100.0f, 100.0f);
+        pointQuadTree = new PointQuadTree(quadTreeSize);
+        // set to split at 2
+        pointQuadTree.MAX_POINTS = 2;
+    }
+
+    @Test
+    public void testRetrieveArea() {
+        pointQuadTree.insert(0, 10.0f, 10.0f);
+        pointQuadTree.insert(1, 90.0f, 90.0f);
+        pointQuadTree.insert(2, 90.0f, 10.0f);
+        pointQuadTree.insert(3, 45.0f, 45.0f);
+
+        IntArray returnIds = new IntArray();
+        pointQuadTree.retrieve(returnIds, new Rectangle(0.0f, 0.0f, 50.0f, 50.0f));
+        assertArrayEquals(new int[] {0, 3}, sorted(returnIds));
+
+        returnIds.clear();
+        pointQuadTree.retrieve(returnIds, new Rectangle(80.0f, 0.0f, 20.0f, 100.0f));
+        assertArrayEquals(new int[] {1, 2}, sorted(returnIds));
+
+        returnIds.clear();
+        pointQuadTree.retrieve(returnIds, new Rectangle(60.0f, 60.0f, 10.0f, 10.0f));
+        assertEquals(0, returnIds.size);
+    }
+
+    @Test
+    public void testRetrieveRadius() {
+        pointQuadTree.insert(0, 10.0f, 10.0f);
+        pointQuadTree.insert(1, 13.0f, 14.0f);
+        pointQuadTree.insert(2, 20.0f, 10.0f);
+        pointQuadTree.insert(3, 90.0f, 90.0f);
+
+        IntArray returnIds = new IntArray();
+        // 1 is exactly 5 away
+        pointQuadTree.retrieve(returnIds, 10.0f, 10.0f, 5.0f);
+        assertArrayEquals(new int[] {0, 1}, sorted(returnIds));
+    }
+
+    @Test
+    public void testNearest() {
+        pointQuadTree.insert(0, 10.0f, 10.0f);
+        pointQuadTree.insert(1, 90.0f, 90.0f);
+        pointQuadTree.insert(2, 60.0f, 60.0f);
+        pointQuadTree.insert(3, 45.0f, 45.0f);
+
+        IntArray returnIds = new IntArray();
+        pointQuadTree.nearest(returnIds, 55.0f, 55.0f, 2);
+        assertArrayEquals(new int[] {2, 3}, returnIds.toArray());
+
+        // asking for more than there are returns them all
+        returnIds.clear();
+        pointQuadTree.nearest(returnIds, 0.0f, 0.0f, 10);
+        assertArrayEquals(new int[] {0, 3, 2, 1}, returnIds.toArray());
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(7);
+        int count = 500;
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = random.nextFloat() * 100.0f;
+            ys[i] = random.nextFloat() * 100.0f;
+            pointQuadTree.insert(i, xs[i], ys[i]);
+        }
+        assertEquals(count, pointQuadTree.size());
+
+        IntArray returnIds = new IntArray();
+        for (int query = 0; query < 50; query++) {
+            float cx = random.nextFloat() * 100.0f;
+            float cy = random.nextFloat() * 100.0f;
+            float radius = random.nextFloat() * 20.0f;
+
+            IntArray expected = new IntArray();
+            for (int i = 0; i < count; i++) {
+                float dx = xs[i] - cx;
+                float dy = ys[i] - cy;
+                if (dx * dx + dy * dy <= radius * radius) {
+                    expected.add(i);
+                }
+            }
+            returnIds.clear();
+            pointQuadTree.retrieve(returnIds, cx, cy, radius);
+            assertArrayEquals(sorted(expected), sorted(returnIds));
+
+            // nearest 5 must all be at least as close as everything else
+            returnIds.clear();
+            pointQuadTree.nearest(returnIds, cx, cy, 5);
+            assertEquals(5, returnIds.size);
+            float furthest = distance2(xs, ys, returnIds.get(4), cx, cy);
+            for (int i = 0; i < count; i++) {
+                if (!contains(returnIds, i)) {
+                    assertEquals(true, distance2(xs, ys, i, cx, cy) >= furthest);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPointsOutsideBounds() {
+        // enough points to split so the leaves have their own bounds
+        pointQuadTree.insert(0, 10.0f, 10.0f);
+        pointQuadTree.insert(1, 20.0f, 20.0f);
+        pointQuadTree.insert(2, 30.0f, 30.0f);
+        pointQuadTree.insert(3, 90.0f, 90.0f);
+        pointQuadTree.insert(4, -50.0f, 10.0f);
+        pointQuadTree.insert(5, 150.0f, 150.0f);
+        assertEquals(6, pointQuadTree.size());
+
+        IntArray returnIds = new IntArray();
+        pointQuadTree.retrieve(returnIds, new Rectangle(0.0f, 0.0f, 50.0f, 50.0f));
+        assertArrayEquals(new int[] {0, 1, 2}, sorted(returnIds));
+
+        returnIds.clear();
+        pointQuadTree.retrieve(returnIds, new Rectangle(-60.0f, 0.0f, 20.0f, 20.0f));
+        assertArrayEquals(new int[] {4}, sorted(returnIds));
+
+        returnIds.clear();
+        pointQuadTree.retrieve(returnIds, -50.0f, 10.0f, 1.0f);
+        assertArrayEquals(new int[] {4}, sorted(returnIds));
+
+        returnIds.clear();
+        pointQuadTree.nearest(returnIds, -40.0f, 10.0f, 2);
+        assertArrayEquals(new int[] {4, 0}, returnIds.toArray());
+
+        returnIds.clear();
+        pointQuadTree.nearest(returnIds, 140.0f, 140.0f, 1);
+        assertArrayEquals(new int[] {5}, returnIds.toArray());
+
+        pointQuadTree.clear();
+        returnIds.clear();
+        pointQuadTree.retrieve(returnIds, -50.0f, 10.0f, 1.0f);
+        assertEquals(0, returnIds.size);
+    }
+
+    private static int[] sorted(IntArray ids) {
+        int[] result = ids.toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static boolean contains(IntArray ids, int id) {
+        for (int i = 0; i < ids.size; i++) {
+            if (ids.get(i) == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static float distance2(float[] xs, float[] ys, int i, float x, float y) {
+        float dx = xs[i] - x;
+        float dy = ys[i] - y;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,76 @@
+package test.uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import uk.co.adeveloperabroad.BoundsProvider;
+import uk.co.adeveloperabroad.QuadTree;
+
+public class QuadTreeBatchTest {
+
+    QuadTree<Rectangle> quadTree;
+
+    // create new quadtree for every test.
+    @Before
+    public void setUp() {
+        Rectangle quadTreeSize = new Rectangle(0.0f, 0.0f, 100.0f, 100.0f);
+        quadTree = new QuadTree<Rectangle>(1, quadTreeSize, BoundsProvider.RECTANGLE);
+        quadTree.MAX_OBJECTS = 2;
+    }
+
+    @Test
+    public void testBatchMatchesRetrieve() {
+        Random random = new Random(11);
+        for (int i = 0; i < 200; i++) {
+            quadTree.insert(new Rectangle(random.nextFloat() * 95.0f, random.nextFloat() * 95.0f,
+                    random.nextFloat() * 5.0f, random.nextFloat() * 5.0f));
+        }
+
+        // small areas, then big ones that straddle lines all the way
+        // down, through the same working space
+        IntArray offsets = new IntArray();
+        Array<Rectangle> results = new Array<Rectangle>();
+        Array<Rectangle> returnObjects = new Array<Rectangle>();
+        for (float size = 10.0f; size <= 40.0f; size += 30.0f) {
+            Array<Rectangle> queries = new Array<Rectangle>();
+            for (int i = 0; i < 100; i++) {
+                queries.add(new Rectangle(random.nextFloat() * 90.0f, random.nextFloat() * 90.0f,
+                        random.nextFloat() * size, random.nextFloat() * size));
+            }
+
+            quadTree.retrieveBatch(queries, offsets, results);
+            assertEquals(queries.size + 1, offsets.size);
+            assertEquals(results.size, offsets.get(queries.size));
+
+            for (int i = 0; i < queries.size; i++) {
+                returnObjects.clear();
+                quadTree.retrieve(returnObjects, queries.get(i));
+
+                assertEquals(returnObjects.size, offsets.get(i + 1) - offsets.get(i));
+                for (int j = 0; j < returnObjects.size; j++) {
+                    assertSame(returnObjects.get(j), results.get(offsets.get(i) + j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchOfNothing() {
+        quadTree.insert(new Rectangle(0.0f, 0.0f, 20.0f, 20.0f));
+
+        IntArray offsets = new IntArray();
+        Array<Rectangle> results = new Array<Rectangle>();
+        quadTree.retrieveBatch(new Array<Rectangle>(), offsets, results);
+        assertEquals(1, offsets.size);
+        assertEquals(0, offsets.get(0));
+        assertEquals(0, results.size);
+    }
+}
@@ -6,21 +6,27 @@ import com.badlogic.gdx.utils.Array;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import uk.co.adeveloperabroad.BoundsProvider;
+import uk.co.adeveloperabroad.PairCallback;
+import uk.co.adeveloperabroad.Particle;
 import uk.co.adeveloperabroad.QuadTree;
+import uk.co.adeveloperabroad.QueryCallback;
 
 public class QuadTreeTest {
 
-    QuadTree quadTree;
+    QuadTree<Rectangle> quadTree;
 
     // create new quadtree for every test.
     @Before
     public void setUp() {
         Rectangle quadTreeSize = new Rectangle(0.0f, 0.0f, 100.0f, 100.0f);
-        quadTree = new QuadTree(1, quadTreeSize);
+        quadTree = new QuadTree<Rectangle>(1, quadTreeSize, BoundsProvider.RECTANGLE);
         // set to split at 2
         quadTree.MAX_OBJECTS = 2;
     }
@@ -28,7 +34,7 @@ public class QuadTreeTest {
 
     @Test
     public void testQuadtreeSetup() {
-        Rectangle bounds = quadTree.bounds;
+        Rectangle bounds = quadTree.getBounds(new Rectangle());
        // System.out.println(bounds.getHeight() + bounds.getWidth());
         assertEquals(100.0f, bounds.getWidth(), 0);
         assertEquals(100.0f, bounds.getHeight(), 0);
@@ -36,10 +42,10 @@ public class QuadTreeTest {
         //level 1
         assertEquals(1, quadTree.level);
 
-        QuadTree[] internalNodes = quadTree.nodes;
+        QuadTree<Rectangle>[] internalNodes = quadTree.nodes;
         assertEquals(4, internalNodes.length);
         // space for nodes but not initialised
-        for (QuadTree node: internalNodes) {
+        for (QuadTree<Rectangle> node: internalNodes) {
             assertNull(node);
         }
 
@@ -71,10 +77,10 @@ public class QuadTreeTest {
         // quadtree contains one object
         assertEquals(1, quadTree.objects.size);
 
-        QuadTree[] internalNodes = quadTree.nodes;
+        QuadTree<Rectangle>[] internalNodes = quadTree.nodes;
         assertEquals(4, internalNodes.length);
         // space for nodes but not initialised as will not split unless two in the area
-        for (QuadTree node: internalNodes) {
+        for (QuadTree<Rectangle> node: internalNodes) {
             assertNull(node);
         }
     }
@@ -113,10 +119,10 @@ public class QuadTreeTest {
         // quadtree contains two object
         assertEquals(2, quadTree.objects.size);
 
-        QuadTree[] internalNodes = quadTree.nodes;
+        QuadTree<Rectangle>[] internalNodes = quadTree.nodes;
         assertEquals(4, internalNodes.length);
         // space for nodes but not initialised as will not split unless two in the area
-        for (QuadTree node: internalNodes) {
+        for (QuadTree<Rectangle> node: internalNodes) {
             assertNull(node);
         }
     }
@@ -154,36 +160,38 @@ public class QuadTreeTest {
         assertEquals(object3, returnObjects.get(0));
 
         // quadtree has split
-        QuadTree[] internalNodes = quadTree.nodes;
+        QuadTree<Rectangle>[] internalNodes = quadTree.nodes;
         assertEquals(4, internalNodes.length);
         assertEquals(2, internalNodes[0].level);
         assertEquals(2, internalNodes[1].level);
         assertEquals(2, internalNodes[2].level);
         assertEquals(2, internalNodes[3].level);
 
+        Rectangle bounds = new Rectangle();
+
         // node 0 bottom right
-        assertEquals(50.0f, internalNodes[0].bounds.getX(), 0);
-        assertEquals(0.0f, internalNodes[0].bounds.getY(), 0);
-        assertEquals(50.0f, internalNodes[0].bounds.getWidth(), 0);
-        assertEquals(50.0f, internalNodes[0].bounds.getHeight(), 0);
+        assertEquals(50.0f, internalNodes[0].getBounds(bounds).getX(), 0);
+        assertEquals(0.0f, internalNodes[0].getBounds(bounds).getY(), 0);
+        assertEquals(50.0f, internalNodes[0].getBounds(bounds).getWidth(), 0);
+        assertEquals(50.0f, internalNodes[0].getBounds(bounds).getHeight(), 0);
 
         // node 1 bottom left
-        assertEquals(0.0f, internalNodes[1].bounds.getX(), 0);
-        assertEquals(0.0f, internalNodes[1].bounds.getY(), 0);
-        assertEquals(50.0f, internalNodes[1].bounds.getWidth(), 0);
-        assertEquals(50.0f, internalNodes[1].bounds.getHeight(), 0);
+        assertEquals(0.0f, internalNodes[1].getBounds(bounds).getX(), 0);
+        assertEquals(0.0f, internalNodes[1].getBounds(bounds).getY(), 0);
+        assertEquals(50.0f, internalNodes[1].getBounds(bounds).getWidth(), 0);
+        assertEquals(50.0f, internalNodes[1].getBounds(bounds).getHeight(), 0);
 
         // node 2 top left
-        assertEquals(0.0f, internalNodes[2].bounds.getX(), 0);
-        assertEquals(50.0f, internalNodes[2].bounds.getY(), 0);
-        assertEquals(50.0f, internalNodes[2].bounds.getWidth(), 0);
-        assertEquals(50.0f, internalNodes[2].bounds.getHeight(), 0);
+        assertEquals(0.0f, internalNodes[2].getBounds(bounds).getX(), 0);
+        assertEquals(50.0f, internalNodes[2].getBounds(bounds).getY(), 0);
+        assertEquals(50.0f, internalNodes[2].getBounds(bounds).getWidth(), 0);
+        assertEquals(50.0f, internalNodes[2].getBounds(bounds).getHeight(), 0);
 
         // node 3 top right
-        assertEquals(50.0f, internalNodes[3].bounds.getX(), 0);
-        assertEquals(50.0f, internalNodes[3].bounds.getY(), 0);
-        assertEquals(50.0f, internalNodes[3].bounds.getWidth(), 0);
-        assertEquals(50.0f, internalNodes[3].bounds.getHeight(), 0);
+        assertEquals(50.0f, internalNodes[3].getBounds(bounds).getX(), 0);
+        assertEquals(50.0f, internalNodes[3].getBounds(bounds).getY(), 0);
+        assertEquals(50.0f, internalNodes[3].getBounds(bounds).getWidth(), 0);
+        assertEquals(50.0f, internalNodes[3].getBounds(bounds).getHeight(), 0);
 
         // quadtree contains 0 object
         assertEquals(0, quadTree.objects.size);
@@ -250,7 +258,7 @@ public class QuadTreeTest {
         assertEquals(object4, returnObjects.get(3));
 
         // quadtree has split
-        QuadTree[] internalNodes = quadTree.nodes;
+        QuadTree<Rectangle>[] internalNodes = quadTree.nodes;
         assertEquals(4, internalNodes.length);
 
         // quadtree root contains object4
@@ -319,7 +327,7 @@ public class QuadTreeTest {
         assertEquals(object4, returnObjects.get(3));
 
         // quadtree has split
-        QuadTree[] internalNodes = quadTree.nodes;
+        QuadTree<Rectangle>[] internalNodes = quadTree.nodes;
         assertEquals(4, internalNodes.length);
 
         // quadtree root contains no objects
@@ -333,7 +341,7 @@ public class QuadTreeTest {
 
         assertEquals(object4, internalNodes[1].objects.get(0));
 
-        QuadTree[] internalNodesLevel2 =  internalNodes[1].nodes;
+        QuadTree<Rectangle>[] internalNodesLevel2 =  internalNodes[1].nodes;
         assertEquals(0, internalNodesLevel2[0].objects.size);
         assertEquals(1, internalNodesLevel2[1].objects.size);
         assertEquals(1, internalNodesLevel2[2].objects.size);
@@ -343,5 +351,314 @@ public class QuadTreeTest {
         assertEquals(object2, internalNodesLevel2[2].objects.get(0));
         assertEquals(object3, internalNodesLevel2[3].objects.get(0));
 
+        // level 3 top right of bottom left, bounds come from the root
+        Rectangle bounds = internalNodesLevel2[3].getBounds(new Rectangle());
+        assertEquals(3, internalNodesLevel2[3].level);
+        assertEquals(25.0f, bounds.getX(), 0);
+        assertEquals(25.0f, bounds.getY(), 0);
+        assertEquals(25.0f, bounds.getWidth(), 0);
+        assertEquals(25.0f, bounds.getHeight(), 0);
+
+    }
+
+    @Test
+    public void TestInsertObjectsUsingBoundsProvider() {
+
+        QuadTree<Particle> particleTree = new QuadTree<Particle>(1,
+                new Rectangle(0.0f, 0.0f, 100.0f, 100.0f), Particle.BOUNDS);
+
+        // same layout as TestInsertThreeObjects
+        Particle particle = new Particle(0.0f, 0.0f, 20.0f, 20.0f, 0);
+        Particle particle2 = new Particle(80.0f, 80.0f, 20.0f, 20.0f, 1);
+        Particle particle3 = new Particle(80.0f, 0.0f, 20.0f, 20.0f, 2);
+        particleTree.insert(particle);
+        particleTree.insert(particle2);
+        particleTree.insert(particle3);
+
+        assertEquals(0, particleTree.objects.size);
+        assertEquals(particle3, particleTree.nodes[0].objects.get(0));
+        assertEquals(particle, particleTree.nodes[1].objects.get(0));
+        assertEquals(particle2, particleTree.nodes[3].objects.get(0));
+
+        Array<Particle> returnObjects = new Array<Particle>();
+        returnObjects = particleTree.retrieveFor(returnObjects, particle2);
+        assertEquals(1, returnObjects.size);
+        assertEquals(particle2, returnObjects.get(0));
+    }
+
+    @Test
+    public void TestPairsThreeObjectsAndCentralObject() {
+
+        // same layout as TestInsertThreeObjectsAndCentralObject
+        Rectangle object = new Rectangle(0.0f, 0.0f, 20.0f, 20.0f);
+        quadTree.insert(object);
+        Rectangle object2 = new Rectangle(80.0f, 80.0f, 20.0f, 20.0f);
+        quadTree.insert(object2);
+        Rectangle object3 = new Rectangle(80.0f, 0.0f, 20.0f, 20.0f);
+        quadTree.insert(object3);
+        Rectangle object4 = new Rectangle(40.0f, 40.0f, 10.0f, 20.0f);
+        quadTree.insert(object4);
+
+        final Array<Rectangle> pairs = new Array<Rectangle>();
+        quadTree.pairs(new PairCallback<Rectangle>() {
+            @Override
+            public void pair(Rectangle first, Rectangle second) {
+                pairs.add(first);
+                pairs.add(second);
+            }
+        });
+
+        // object4 sits at the root so pairs with each of the others, once
+        assertEquals(6, pairs.size);
+        assertEquals(object4, pairs.get(0));
+        assertEquals(object3, pairs.get(1));
+        assertEquals(object4, pairs.get(2));
+        assertEquals(object, pairs.get(3));
+        assertEquals(object4, pairs.get(4));
+        assertEquals(object2, pairs.get(5));
+    }
+
+    @Test
+    public void TestAutoResizeGrowsAndShrinksRoot() {
+
+        quadTree.setAutoResize(true);
+
+        Rectangle object = new Rectangle(10.0f, 10.0f, 20.0f, 20.0f);
+        quadTree.insert(object);
+        Rectangle object2 = new Rectangle(80.0f, 80.0f, 20.0f, 20.0f);
+        quadTree.insert(object2);
+
+        // bottom left, outside the root
+        Rectangle object3 = new Rectangle(-50.0f, -30.0f, 20.0f, 20.0f);
+        quadTree.insert(object3);
+
+        // fitted around the three objects, not around home
+        Rectangle bounds = quadTree.getBounds(new Rectangle());
+        assertEquals(-88.0f, bounds.getX(), 0);
+        assertEquals(-63.0f, bounds.getY(), 0);
+        assertEquals(226.0f, bounds.getWidth(), 0);
+        assertEquals(196.0f, bounds.getHeight(), 0);
+
+        // object straddles the new midpoint, object3 and object2 are apart
+        assertEquals(1, quadTree.objects.size);
+        Array<Rectangle> returnObjects = new Array<Rectangle>();
+        returnObjects = quadTree.retrieve(returnObjects, object3);
+        assertEquals(2, returnObjects.size);
+        assertTrue(returnObjects.contains(object3, true));
+        assertFalse(returnObjects.contains(object2, true));
+
+        // back to the original bounds
+        quadTree.clear();
+        bounds = quadTree.getBounds(bounds);
+        assertEquals(0.0f, bounds.getX(), 0);
+        assertEquals(0.0f, bounds.getY(), 0);
+        assertEquals(100.0f, bounds.getWidth(), 0);
+        assertEquals(100.0f, bounds.getHeight(), 0);
+    }
+
+    @Test
+    public void TestAutoResizeKeepsObjectsWhenGrowingTwice() {
+
+        QuadTree<Rectangle> tree = new QuadTree<Rectangle>(0, new Rectangle(0, 0, 138, 138), BoundsProvider.RECTANGLE);
+        tree.setAutoResize(true);
+
+        // floats are 64 apart out here, rounding the refit root puts the
+        // first object back just outside it, where it would grow again
+        float edge = -(1 << 30);
+        Array<Rectangle> entities = new Array<Rectangle>();
+        entities.add(new Rectangle(edge + 64, edge + 768, 1, 1));
+        entities.add(new Rectangle(edge, edge + 1408, 2, 2));
+        entities.add(new Rectangle(edge + 64, edge + 2176, 3, 3));
+        entities.add(new Rectangle(edge + 1088, edge + 1792, 1, 1));
+        for (int i = 0; i < entities.size; i++) {
+            tree.insert(entities.get(i));
+        }
+
+        final Array<Rectangle> visible = new Array<Rectangle>();
+        tree.queryVisible(new Rectangle(-1e13f, -1e13f, 2e13f, 2e13f), new QueryCallback<Rectangle>() {
+            @Override
+            public void report(Rectangle object) {
+                visible.add(object);
+            }
+        });
+        assertEquals(entities.size, visible.size);
+        for (int i = 0; i < entities.size; i++) {
+            assertTrue(visible.contains(entities.get(i), true));
+        }
+    }
+
+    @Test
+    public void TestAutoResizeFollowsObjectsAwayFromHome() {
+
+        QuadTree<Rectangle> tree = new QuadTree<Rectangle>(1, new Rectangle(0, 0, 1000, 1000), BoundsProvider.RECTANGLE);
+        tree.setAutoResize(true);
+
+        Random random = new Random(3);
+        Array<Rectangle> entities = new Array<Rectangle>();
+        for (int i = 0; i < 2000; i++) {
+            Rectangle entity = new Rectangle(100000 + random.nextFloat() * 1000,
+                    100000 + random.nextFloat() * 1000, 5, 5);
+            entities.add(entity);
+            tree.insert(entity);
+        }
+
+        // the root moved out to the entities, home is no longer inside it
+        Rectangle bounds = tree.getBounds(new Rectangle());
+        assertTrue(bounds.getX() > 1000);
+        assertTrue(bounds.getY() > 1000);
+
+        Array<Rectangle> returnObjects = new Array<Rectangle>();
+        int candidates = 0;
+        for (Rectangle entity : entities) {
+            returnObjects.clear();
+            tree.retrieve(returnObjects, entity);
+            assertTrue(returnObjects.contains(entity, true));
+            candidates += returnObjects.size;
+        }
+        assertTrue(candidates / entities.size < 100);
+    }
+
+    @Test
+    public void TestDefaultAndOtherLayersInOneNode() {
+
+        int bullets = 2;
+
+        // a default object first, then a bullet in the same node
+        Rectangle crate = new Rectangle(10.0f, 10.0f, 10.0f, 10.0f);
+        quadTree.insert(crate);
+        Rectangle bullet = new Rectangle(60.0f, 60.0f, 10.0f, 10.0f);
+        quadTree.insert(bullet, bullets, 0);
+        // splits, both move down with their layers
+        Rectangle crate2 = new Rectangle(70.0f, 10.0f, 10.0f, 10.0f);
+        quadTree.insert(crate2);
+        assertEquals(0, quadTree.objects.size);
+
+        Array<Rectangle> returnObjects = new Array<Rectangle>();
+        quadTree.retrieve(returnObjects, new Rectangle(0.0f, 0.0f, 100.0f, 100.0f),
+                QuadTree.DEFAULT_CATEGORY, QuadTree.DEFAULT_MASK);
+        // the bullet's mask is empty so nothing interacts with it
+        assertEquals(2, returnObjects.size);
+        assertTrue(returnObjects.contains(crate, true));
+        assertTrue(returnObjects.contains(crate2, true));
+    }
+
+    @Test
+    public void TestCollisionLayers() {
+
+        int players = 1;
+        int bullets = 2;
+        int pickups = 4;
+
+        // bullets hit players, never other bullets
+        Rectangle bullet = new Rectangle(0.0f, 0.0f, 10.0f, 10.0f);
+        quadTree.insert(bullet, bullets, players);
+        Rectangle bullet2 = new Rectangle(5.0f, 5.0f, 10.0f, 10.0f);
+        quadTree.insert(bullet2, bullets, players);
+        // pickups only with players
+        Rectangle pickup = new Rectangle(80.0f, 80.0f, 10.0f, 10.0f);
+        quadTree.insert(pickup, pickups, players);
+        Rectangle pickup2 = new Rectangle(85.0f, 85.0f, 10.0f, 10.0f);
+        quadTree.insert(pickup2, pickups, players);
+
+        // another bullet finds nothing, not even the bullets next to it
+        Array<Rectangle> returnObjects = new Array<Rectangle>();
+        returnObjects = quadTree.retrieve(returnObjects, new Rectangle(2.0f, 2.0f, 5.0f, 5.0f), bullets, players);
+        assertEquals(0, returnObjects.size);
+
+        // a player finds the pickups
+        returnObjects = quadTree.retrieve(returnObjects, new Rectangle(82.0f, 82.0f, 5.0f, 5.0f), players, -1);
+        assertEquals(2, returnObjects.size);
+        assertEquals(pickup, returnObjects.get(0));
+        assertEquals(pickup2, returnObjects.get(1));
+
+        final Array<Rectangle> pairs = new Array<Rectangle>();
+        PairCallback<Rectangle> callback = new PairCallback<Rectangle>() {
+            @Override
+            public void pair(Rectangle first, Rectangle second) {
+                pairs.add(first);
+                pairs.add(second);
+            }
+        };
+        quadTree.pairs(callback);
+        assertEquals(0, pairs.size);
+
+        Rectangle player = new Rectangle(81.0f, 81.0f, 10.0f, 10.0f);
+        quadTree.insert(player, players, bullets | pickups);
+        quadTree.pairs(callback);
+        assertEquals(4, pairs.size);
+        assertTrue(pairs.get(0) == player || pairs.get(1) == player);
+        assertTrue(pairs.get(2) == player || pairs.get(3) == player);
+    }
+
+    @Test
+    public void TestQueryVisible() {
+
+        // same layout as TestInsertThreeObjectsAndCentralObject
+        Rectangle object = new Rectangle(0.0f, 0.0f, 20.0f, 20.0f);
+        quadTree.insert(object);
+        Rectangle object2 = new Rectangle(80.0f, 80.0f, 20.0f, 20.0f);
+        quadTree.insert(object2);
+        Rectangle object3 = new Rectangle(80.0f, 0.0f, 20.0f, 20.0f);
+        quadTree.insert(object3);
+        Rectangle object4 = new Rectangle(40.0f, 40.0f, 10.0f, 20.0f);
+        quadTree.insert(object4);
+
+        final Array<Rectangle> visible = new Array<Rectangle>();
+        QueryCallback<Rectangle> callback = new QueryCallback<Rectangle>() {
+            @Override
+            public void report(Rectangle object) {
+                visible.add(object);
+            }
+        };
+
+        // bottom right corner only
+        quadTree.queryVisible(new Rectangle(60.0f, 0.0f, 40.0f, 40.0f), callback);
+        assertEquals(1, visible.size);
+        assertEquals(object3, visible.get(0));
+
+        // top half catches the centre object at the root
+        visible.clear();
+        quadTree.queryVisible(new Rectangle(0.0f, 55.0f, 100.0f, 45.0f), callback);
+        assertEquals(2, visible.size);
+        assertEquals(object4, visible.get(0));
+        assertEquals(object2, visible.get(1));
+
+        // the whole tree
+        visible.clear();
+        quadTree.queryVisible(new Rectangle(-10.0f, -10.0f, 120.0f, 120.0f), callback);
+        assertEquals(4, visible.size);
+    }
+
+    @Test
+    public void TestQueryVisibleOutsideQuadrant() {
+
+        quadTree = new QuadTree<Rectangle>(1, new Rectangle(0.0f, 0.0f, 101.0f, 101.0f), BoundsProvider.RECTANGLE);
+        quadTree.insert(new Rectangle(10.0f, 10.0f, 10.0f, 10.0f));
+        quadTree.insert(new Rectangle(80.0f, 10.0f, 10.0f, 10.0f));
+        // the top right quadrant stops at 100 but this goes in it
+        Rectangle corner = new Rectangle(100.3f, 100.3f, 0.5f, 0.5f);
+        quadTree.insert(corner);
+        // outside the root altogether, in the bottom left quadrant
+        Rectangle outside = new Rectangle(-50.0f, -50.0f, 10.0f, 10.0f);
+        quadTree.insert(outside);
+        assertTrue(quadTree.nodes[0] != null);
+
+        final Array<Rectangle> visible = new Array<Rectangle>();
+        QueryCallback<Rectangle> callback = new QueryCallback<Rectangle>() {
+            @Override
+            public void report(Rectangle object) {
+                visible.add(object);
+            }
+        };
+
+        quadTree.queryVisible(new Rectangle(100.2f, 100.2f, 5.0f, 5.0f), callback);
+        assertEquals(1, visible.size);
+        assertEquals(corner, visible.get(0));
+
+        // covers the root bounds but not the object outside them
+        visible.clear();
+        quadTree.queryVisible(new Rectangle(0.0f, 0.0f, 101.0f, 101.0f), callback);
+        assertEquals(3, visible.size);
+        assertFalse(visible.contains(outside, true));
     }
 }
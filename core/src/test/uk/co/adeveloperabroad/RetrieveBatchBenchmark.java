@@ -0,0 +1,91 @@
+package test.uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongArray;
+
+import java.util.Random;
+
+import uk.co.adeveloperabroad.BoundsProvider;
+import uk.co.adeveloperabroad.QuadTree;
+import uk.co.adeveloperabroad.TracePlayer;
+
+/*
+ * retrieveBatch() against calling retrieve() once per query, 5000
+ * objects and a query around each of them. Run with main(), not part
+ * of the unit tests.
+ *
+ * "loop" fills the same offsets and results as retrieveBatch(),
+ * "loop reused" clears one list per query and keeps nothing.
+ */
+public class RetrieveBatchBenchmark {
+
+    private static final int OBJECTS = 5000;
+    private static final int WARMUP = 2000;
+    private static final int RUNS = 500;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        QuadTree<Rectangle> quadTree = new QuadTree<Rectangle>(1,
+                new Rectangle(0, 0, 1000, 1000), BoundsProvider.RECTANGLE);
+        Array<Rectangle> queries = new Array<Rectangle>();
+        for (int i = 0; i < OBJECTS; i++) {
+            Rectangle object = new Rectangle(random.nextFloat() * 990, random.nextFloat() * 990,
+                    2 + random.nextFloat() * 8, 2 + random.nextFloat() * 8);
+            quadTree.insert(object);
+            queries.add(object);
+        }
+
+        IntArray offsets = new IntArray();
+        Array<Rectangle> results = new Array<Rectangle>();
+        Array<Rectangle> returnObjects = new Array<Rectangle>();
+        LongArray batch = new LongArray();
+        LongArray loop = new LongArray();
+        LongArray loopReused = new LongArray();
+        long candidates = 0;
+
+        for (int run = 0; run < WARMUP + RUNS; run++) {
+            long start = System.nanoTime();
+            quadTree.retrieveBatch(queries, offsets, results);
+            long batchNanos = System.nanoTime() - start;
+            candidates += results.size;
+
+            start = System.nanoTime();
+            offsets.clear();
+            results.clear();
+            for (int i = 0; i < queries.size; i++) {
+                offsets.add(results.size);
+                quadTree.retrieve(results, queries.get(i));
+            }
+            offsets.add(results.size);
+            long loopNanos = System.nanoTime() - start;
+            candidates += results.size;
+
+            start = System.nanoTime();
+            for (int i = 0; i < queries.size; i++) {
+                returnObjects.clear();
+                quadTree.retrieve(returnObjects, queries.get(i));
+                candidates += returnObjects.size;
+            }
+            long loopReusedNanos = System.nanoTime() - start;
+
+            if (run >= WARMUP) {
+                batch.add(batchNanos);
+                loop.add(loopNanos);
+                loopReused.add(loopReusedNanos);
+            }
+        }
+
+        System.out.println(OBJECTS + " objects, " + queries.size + " queries, "
+                + results.size + " results per batch (" + candidates + ")");
+        print("retrieveBatch", batch);
+        print("loop", loop);
+        print("loop reused", loopReused);
+    }
+
+    private static void print(String name, LongArray nanos) {
+        System.out.println(name + " us p50 " + TracePlayer.Result.percentile(nanos, 50) / 1000
+                + " p99 " + TracePlayer.Result.percentile(nanos, 99) / 1000);
+    }
+}
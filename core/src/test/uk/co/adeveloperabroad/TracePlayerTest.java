@@ -0,0 +1,68 @@
+package test.uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.LongArray;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import uk.co.adeveloperabroad.ReplayIndex;
+import uk.co.adeveloperabroad.Scenario;
+import uk.co.adeveloperabroad.TracePlayer;
+import uk.co.adeveloperabroad.TraceRecorder;
+
+public class TracePlayerTest {
+
+    Rectangle area = new Rectangle(0.0f, 0.0f, 500.0f, 500.0f);
+
+    @Test
+    public void testSameSeedSameRun() {
+        Scenario scenario = new Scenario(42L, 50, 10.0f, area);
+        Scenario scenario2 = new Scenario(42L, 50, 10.0f, area);
+
+        for (int tick = 0; tick < 100; tick++) {
+            scenario.step(1 / 30f);
+            scenario2.step(1 / 30f);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(scenario.getParticles().get(i).getX(), scenario2.getParticles().get(i).getX(), 0);
+            assertEquals(scenario.getParticles().get(i).getY(), scenario2.getParticles().get(i).getY(), 0);
+        }
+    }
+
+    @Test
+    public void testRecordAndReplay() {
+        ByteArrayOutputStream trace = new ByteArrayOutputStream();
+        TraceRecorder.record(new Scenario(7L, 40, 10.0f, area), 20, 1 / 30f, trace);
+        // header, sizes, then x and y per particle per tick
+        assertEquals(12 + 40 * 8 + 20 * 40 * 8, trace.size());
+
+        TracePlayer.Result quadTreeResult = TracePlayer.play(new ByteArrayInputStream(trace.toByteArray()),
+                new ReplayIndex.QuadTreeIndex(new Rectangle(area)));
+        assertEquals(20, quadTreeResult.getTicks());
+        // every particle at least finds itself
+        assertTrue(quadTreeResult.candidates >= 20 * 40);
+
+        TracePlayer.Result pointResult = TracePlayer.play(new ByteArrayInputStream(trace.toByteArray()),
+                new ReplayIndex.PointQuadTreeIndex(new Rectangle(area)));
+        assertEquals(20, pointResult.getTicks());
+        assertTrue(pointResult.candidates >= 20 * 40);
+    }
+
+    @Test
+    public void testPercentile() {
+        LongArray nanos = new LongArray();
+        for (int i = 100; i >= 1; i--) {
+            nanos.add(i);
+        }
+        assertEquals(50, TracePlayer.Result.percentile(nanos, 50));
+        assertEquals(99, TracePlayer.Result.percentile(nanos, 99));
+        assertEquals(100, TracePlayer.Result.percentile(nanos, 100));
+        assertEquals(0, TracePlayer.Result.percentile(new LongArray(), 50));
+    }
+}
@@ -0,0 +1,26 @@
+package uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.math.Rectangle;
+
+/*
+ * Tells the QuadTree where an object is. The bounds are copied into
+ * a rectangle owned by the tree so objects don't need to extend
+ * Rectangle or keep one of their own.
+ */
+public interface BoundsProvider<T> {
+
+    /*
+     * Bounds for plain rectangles, they are their own bounds
+     */
+    BoundsProvider<Rectangle> RECTANGLE = new BoundsProvider<Rectangle>() {
+        @Override
+        public Rectangle getBounds(Rectangle object, Rectangle out) {
+            return out.set(object);
+        }
+    };
+
+    /*
+     * Write the bounds of the object into out and return it
+     */
+    Rectangle getBounds(T object, Rectangle out);
+}
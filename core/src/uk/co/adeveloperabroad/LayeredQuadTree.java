@@ -0,0 +1,191 @@
+package uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+
+/*
+ * Two QuadTrees over the same area, one for objects that never move
+ * and one for everything else.
+ *
+ * The static tree is built once, the dynamic one is cleared and
+ * refilled each frame. Queries look in both and the pair pass never
+ * pairs two static objects.
+ */
+public class LayeredQuadTree<T> {
+
+    private final QuadTree<T> staticTree;
+    private final QuadTree<T> dynamicTree;
+    private final Array<T> dynamicObjects = new Array<T>();
+    private final IntArray dynamicCategories = new IntArray();
+    private final IntArray dynamicMasks = new IntArray();
+    private boolean frozen = false;
+
+    private final Array<T> staticCandidates = new Array<T>();
+
+    /*
+     * Constructor
+     */
+    public LayeredQuadTree(Rectangle bounds, BoundsProvider<T> boundsProvider) {
+        staticTree = new QuadTree<T>(1, new Rectangle(bounds), boundsProvider);
+        dynamicTree = new QuadTree<T>(1, new Rectangle(bounds), boundsProvider);
+    }
+
+    public QuadTree<T> getStaticTree() {
+        return staticTree;
+    }
+
+    public QuadTree<T> getDynamicTree() {
+        return dynamicTree;
+    }
+
+    /*
+     * Add an object that will not move
+     */
+    public void insertStatic(T object) {
+        insertStatic(object, QuadTree.DEFAULT_CATEGORY, QuadTree.DEFAULT_MASK);
+    }
+
+    /*
+     * Add an object that will not move, in the given collision layers
+     */
+    public void insertStatic(T object, int category, int mask) {
+        if (frozen) {
+            throw new GdxRuntimeException("Static tree is frozen");
+        }
+        staticTree.insert(object, category, mask);
+    }
+
+    /*
+     * Add all the static objects at once and freeze the static tree
+     */
+    public void buildStatic(Array<T> objects) {
+        for (int i = 0; i < objects.size; i++) {
+            insertStatic(objects.get(i));
+        }
+        freeze();
+    }
+
+    /*
+     * Add all the static objects at once, object i in categories[i]
+     * and masks[i], and freeze the static tree
+     */
+    public void buildStatic(Array<T> objects, IntArray categories, IntArray masks) {
+        if (categories.size != objects.size || masks.size != objects.size) {
+            throw new GdxRuntimeException("Need a category and a mask for each static object");
+        }
+        for (int i = 0; i < objects.size; i++) {
+            insertStatic(objects.get(i), categories.get(i), masks.get(i));
+        }
+        freeze();
+    }
+
+    /*
+     * No more static objects can be added after this
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /*
+     * Add an object that moves, it stays until clearDynamic()
+     */
+    public void insert(T object) {
+        insert(object, QuadTree.DEFAULT_CATEGORY, QuadTree.DEFAULT_MASK);
+    }
+
+    /*
+     * Add an object that moves, in the given collision layers
+     */
+    public void insert(T object, int category, int mask) {
+        dynamicObjects.add(object);
+        dynamicCategories.add(category);
+        dynamicMasks.add(mask);
+        dynamicTree.insert(object, category, mask);
+    }
+
+    /*
+     * Clears the moving objects, the static tree is kept
+     */
+    public void clearDynamic() {
+        dynamicObjects.clear();
+        dynamicCategories.clear();
+        dynamicMasks.clear();
+        dynamicTree.clear();
+    }
+
+    /*
+     * Return all objects, static and moving, that could collide with the given area
+     */
+    public Array<T> retrieve(Array<T> returnObjects, Rectangle pRect) {
+        staticTree.retrieve(returnObjects, pRect);
+        return dynamicTree.retrieve(returnObjects, pRect);
+    }
+
+    /*
+     * Return all objects, static and moving, that could collide with the given object
+     */
+    public Array<T> retrieveFor(Array<T> returnObjects, T object) {
+        staticTree.retrieveFor(returnObjects, object);
+        return dynamicTree.retrieveFor(returnObjects, object);
+    }
+
+    /*
+     * Return all objects, static and moving, that could collide with the
+     * given area and whose collision layers interact with category and mask
+     */
+    public Array<T> retrieve(Array<T> returnObjects, Rectangle pRect, int category, int mask) {
+        staticTree.retrieve(returnObjects, pRect, category, mask);
+        return dynamicTree.retrieve(returnObjects, pRect, category, mask);
+    }
+
+    /*
+     * Return all objects, static and moving, that could collide with the
+     * given object and whose collision layers interact with category and mask
+     */
+    public Array<T> retrieveFor(Array<T> returnObjects, T object, int category, int mask) {
+        staticTree.retrieveFor(returnObjects, object, category, mask);
+        return dynamicTree.retrieveFor(returnObjects, object, category, mask);
+    }
+
+    /*
+     * Report the static and moving objects the camera can see
+     */
+    public void queryVisible(Camera camera, QueryCallback<T> callback) {
+        staticTree.queryVisible(camera, callback);
+        dynamicTree.queryVisible(camera, callback);
+    }
+
+    /*
+     * Report the static and moving objects overlapping the viewport
+     */
+    public void queryVisible(Rectangle viewport, QueryCallback<T> callback) {
+        staticTree.queryVisible(viewport, callback);
+        dynamicTree.queryVisible(viewport, callback);
+    }
+
+    /*
+     * Report every pair that could collide. Moving objects are paired
+     * with each other and with static objects, the moving one first.
+     * Two static objects are never paired, nor are objects whose
+     * collision layers don't interact.
+     */
+    public void pairs(PairCallback<T> callback) {
+        dynamicTree.pairs(callback);
+
+        for (int i = 0; i < dynamicObjects.size; i++) {
+            T object = dynamicObjects.get(i);
+            staticCandidates.clear();
+            staticTree.retrieveFor(staticCandidates, object, dynamicCategories.get(i), dynamicMasks.get(i));
+            for (int j = 0; j < staticCandidates.size; j++) {
+                callback.pair(object, staticCandidates.get(j));
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IdentityMap;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * A built QuadTree flattened into a ByteBuffer so static geometry can
+ * be written once at build time and queried straight from a memory
+ * mapped file, without inserting anything at load.
+ *
+ * Layout, all values little endian ints and floats:
+ *
+ *   header  magic, version, node count, entry count
+ *   nodes   min x, min y, max x, max y, first child, first entry, entry count
+ *   entries id, x, y, width, height
+ *
+ * Nodes are stored breadth first so the four children of a node are
+ * next to each other, first child is -1 for a leaf. Entries are the
+ * objects held at each node, in node order.
+ *
+ * Node bounds are the box around everything under the node rather
+ * than the quadrant, QuadTree can push objects just outside their
+ * quadrant. An empty node has min above max so no query overlaps it.
+ *
+ * PackedQuadTreeFile writes and memory maps these on the platforms
+ * that have files.
+ */
+public class PackedQuadTree {
+
+    public static final int MAGIC = 0x51545245;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int NODE_SIZE = 28;
+    private static final int ENTRY_SIZE = 20;
+
+    private final ByteBuffer buffer;
+    private final int nodeCount;
+    private final int entryCount;
+    private final int entriesOffset;
+
+    /*
+     * Wrap a buffer produced by pack(), nothing is copied
+     */
+    public PackedQuadTree(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new GdxRuntimeException("Not a packed quadtree");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new GdxRuntimeException("Unsupported packed quadtree version: " + buffer.getInt(4));
+        }
+        nodeCount = buffer.getInt(8);
+        entryCount = buffer.getInt(12);
+        if (nodeCount < 0 || entryCount < 0) {
+            throw new GdxRuntimeException("Packed quadtree header is corrupt");
+        }
+
+        // in longs, counts from a damaged header can overflow an int
+        if (buffer.limit() < HEADER_SIZE + (long)nodeCount * NODE_SIZE + (long)entryCount * ENTRY_SIZE) {
+            throw new GdxRuntimeException("Packed quadtree is truncated");
+        }
+        entriesOffset = HEADER_SIZE + nodeCount * NODE_SIZE;
+    }
+
+    /*
+     * Flatten the tree into a new buffer. The id stored for each
+     * object is its index in objects.
+     */
+    public static <T> ByteBuffer pack(QuadTree<T> tree, Array<T> objects) {
+        IdentityMap<T, Integer> ids = new IdentityMap<T, Integer>(objects.size);
+        for (int i = 0; i < objects.size; i++) {
+            ids.put(objects.get(i), i);
+        }
+
+        // breadth first, children end up next to each other
+        Array<QuadTree<T>> nodes = new Array<QuadTree<T>>();
+        nodes.add(tree);
+        int entries = 0;
+        for (int i = 0; i < nodes.size; i++) {
+            QuadTree<T> node = nodes.get(i);
+            entries += node.objects.size;
+            if (node.nodes[0] != null) {
+                for (int j = 0; j < 4; j++) {
+                    nodes.add(node.nodes[j]);
+                }
+            }
+        }
+
+        // box around each subtree, children come after their parent
+        // so walking backwards finishes the children first
+        float[] minX = new float[nodes.size];
+        float[] minY = new float[nodes.size];
+        float[] maxX = new float[nodes.size];
+        float[] maxY = new float[nodes.size];
+        Rectangle bounds = new Rectangle();
+        int firstChild = nodes.size;
+        for (int i = nodes.size - 1; i >= 0; i--) {
+            QuadTree<T> node = nodes.get(i);
+            minX[i] = Float.POSITIVE_INFINITY;
+            minY[i] = Float.POSITIVE_INFINITY;
+            maxX[i] = Float.NEGATIVE_INFINITY;
+            maxY[i] = Float.NEGATIVE_INFINITY;
+            for (T object : node.objects) {
+                tree.getObjectBounds(object, bounds);
+                minX[i] = Math.min(minX[i], bounds.getX());
+                minY[i] = Math.min(minY[i], bounds.getY());
+                maxX[i] = Math.max(maxX[i], bounds.getX() + bounds.getWidth());
+                maxY[i] = Math.max(maxY[i], bounds.getY() + bounds.getHeight());
+            }
+            if (node.nodes[0] != null) {
+                firstChild -= 4;
+                for (int j = firstChild; j < firstChild + 4; j++) {
+                    minX[i] = Math.min(minX[i], minX[j]);
+                    minY[i] = Math.min(minY[i], minY[j]);
+                    maxX[i] = Math.max(maxX[i], maxX[j]);
+                    maxY[i] = Math.max(maxY[i], maxY[j]);
+                }
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + nodes.size * NODE_SIZE + entries * ENTRY_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(nodes.size);
+        buffer.putInt(entries);
+
+        firstChild = 1;
+        int firstEntry = 0;
+        for (int i = 0; i < nodes.size; i++) {
+            QuadTree<T> node = nodes.get(i);
+            buffer.putFloat(minX[i]);
+            buffer.putFloat(minY[i]);
+            buffer.putFloat(maxX[i]);
+            buffer.putFloat(maxY[i]);
+            if (node.nodes[0] != null) {
+                buffer.putInt(firstChild);
+                firstChild += 4;
+            }
+            else {
+                buffer.putInt(-1);
+            }
+            buffer.putInt(firstEntry);
+            buffer.putInt(node.objects.size);
+            firstEntry += node.objects.size;
+        }
+
+        for (int i = 0; i < nodes.size; i++) {
+            for (T object : nodes.get(i).objects) {
+                Integer id = ids.get(object);
+                if (id == null) {
+                    throw new GdxRuntimeException("Object in tree is missing from objects");
+                }
+                tree.getObjectBounds(object, bounds);
+                buffer.putInt(id);
+                buffer.putFloat(bounds.getX());
+                buffer.putFloat(bounds.getY());
+                buffer.putFloat(bounds.getWidth());
+                buffer.putFloat(bounds.getHeight());
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    /*
+     * Add the ids of all entries overlapping the area to returnIds
+     */
+    public IntArray retrieve(IntArray returnIds, Rectangle area) {
+        if (nodeCount > 0) {
+            retrieve(returnIds, 0, area.getX(), area.getY(),
+                    area.getX() + area.getWidth(), area.getY() + area.getHeight());
+        }
+        return returnIds;
+    }
+
+    private void retrieve(IntArray returnIds, int node, float minX, float minY, float maxX, float maxY) {
+        int offset = HEADER_SIZE + node * NODE_SIZE;
+
+        if (buffer.getFloat(offset) > maxX || buffer.getFloat(offset + 8) < minX
+                || buffer.getFloat(offset + 4) > maxY || buffer.getFloat(offset + 12) < minY) {
+            return;
+        }
+
+        int entry = entriesOffset + buffer.getInt(offset + 20) * ENTRY_SIZE;
+        int end = entry + buffer.getInt(offset + 24) * ENTRY_SIZE;
+        for (; entry < end; entry += ENTRY_SIZE) {
+            float x = buffer.getFloat(entry + 4);
+            float y = buffer.getFloat(entry + 8);
+            if (x <= maxX && x + buffer.getFloat(entry + 12) >= minX
+                    && y <= maxY && y + buffer.getFloat(entry + 16) >= minY) {
+                returnIds.add(buffer.getInt(entry));
+            }
+        }
+
+        int firstChild = buffer.getInt(offset + 16);
+        if (firstChild != -1) {
+            for (int i = 0; i < 4; i++) {
+                retrieve(returnIds, firstChild + i, minX, minY, maxX, maxY);
+            }
+        }
+    }
+}
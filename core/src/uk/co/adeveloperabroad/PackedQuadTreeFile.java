@@ -0,0 +1,48 @@
+package uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Writes a PackedQuadTree to a file and memory maps it back.
+ *
+ * Needs java.io files and FileChannel, so it is left out of the GWT
+ * module and only works where the FileHandle is backed by a real file,
+ * not for internal files inside an apk or jar.
+ */
+public class PackedQuadTreeFile {
+
+    /*
+     * Pack the tree and write it to file
+     */
+    public static <T> void write(FileHandle file, QuadTree<T> tree, Array<T> objects) {
+        file.writeBytes(PackedQuadTree.pack(tree, objects).array(), false);
+    }
+
+    /*
+     * Memory map a file written by write() and query it in place
+     */
+    public static PackedQuadTree map(FileHandle file) {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file.file(), "r");
+            FileChannel channel = randomAccessFile.getChannel();
+            // the mapping stays valid after the file is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PackedQuadTree(buffer);
+        }
+        catch (IOException e) {
+            throw new GdxRuntimeException("Couldn't map packed quadtree: " + file, e);
+        }
+        finally {
+            StreamUtils.closeQuietly(randomAccessFile);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package uk.co.adeveloperabroad;
+
+/*
+ * Receives the candidate pairs found by a pair pass, each pair is
+ * reported once
+ */
+public interface PairCallback<T> {
+
+    void pair(T first, T second);
+}
@@ -4,8 +4,16 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Rectangle;
 
-public class Particle extends Rectangle {
+import java.util.Random;
 
+public class Particle {
+
+    public static final BoundsProvider<Particle> BOUNDS = new BoundsProvider<Particle>() {
+        @Override
+        public Rectangle getBounds(Particle particle, Rectangle out) {
+            return out.set(particle.x, particle.y, particle.width, particle.height);
+        }
+    };
 
     public Integer id;
     public boolean collided = false;
@@ -14,9 +22,25 @@ public class Particle extends Rectangle {
     public Integer velocityX = 0;
     public Integer velocityY = 0;
 
-    public Particle(Rectangle rectangle, int id) {
-        super(rectangle.getX(),rectangle.getY(),rectangle.getWidth(), rectangle.getHeight());
+    private float x;
+    private float y;
+    private float width;
+    private float height;
+
+    // where speeds come from, seed it to get the same run every time
+    private final Random random;
+
+    public Particle(float x, float y, float width, float height, int id) {
+        this(x, y, width, height, id, MathUtils.random);
+    }
+
+    public Particle(float x, float y, float width, float height, int id, Random random) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
         this.id = id;
+        this.random = random;
         setSpeed();
     }
 
@@ -25,8 +49,8 @@ public class Particle extends Rectangle {
     }
 
     private void setSpeed() {
-        velocityX =  MathUtils.random(-50, 50);
-        velocityY =  MathUtils.random(-50, 50);
+        velocityX =  random.nextInt(101) - 50;
+        velocityY =  random.nextInt(101) - 50;
     }
 
     public Color getColour() {
@@ -37,4 +61,28 @@ public class Particle extends Rectangle {
         return colour;
     }
 
+    public float getX() {
+        return x;
+    }
+
+    public void setX(float x) {
+        this.x = x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public void setY(float y) {
+        this.y = y;
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+
 }
@@ -0,0 +1,381 @@
+package uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/*
+ * A point-region quadtree for entities that are just a position,
+ * bullets, pickups and the like.
+ *
+ * Points are kept as x/y/id in primitive arrays and nodes as indexes
+ * into those arrays, so there is no object per point or per node.
+ * Points only ever live in leaves, a full leaf splits and hands its
+ * points down. Node bounds are not stored, they are worked out from
+ * the root bounds on the way down.
+ *
+ * Points outside the root bounds are kept in a separate list that
+ * every query tests point by point, the node bounds say nothing
+ * about them.
+ */
+public class PointQuadTree {
+
+    public int MAX_POINTS = 8;
+    private int MAX_LEVELS = 8;
+
+    private static final int NONE = -1;
+
+    private float rootX;
+    private float rootY;
+    private float rootWidth;
+    private float rootHeight;
+
+    // one entry per point
+    private final FloatArray pointX = new FloatArray();
+    private final FloatArray pointY = new FloatArray();
+    private final IntArray pointId = new IntArray();
+    // next point in the same leaf, NONE ends the list
+    private final IntArray pointNext = new IntArray();
+
+    // one entry per node, node 0 is the root. Children are four
+    // consecutive nodes starting at firstChild, NONE for a leaf
+    private final IntArray firstChild = new IntArray();
+    private final IntArray leafHead = new IntArray();
+    private final IntArray leafCount = new IntArray();
+
+    // points outside the root bounds, linked through pointNext
+    private int outsideHead = NONE;
+
+    // k nearest scratch, sorted closest first
+    private float[] nearestDistance = new float[0];
+    private int[] nearestId = new int[0];
+    private int nearestFound;
+
+    /*
+     * Constructor
+     */
+    public PointQuadTree(Rectangle bounds) {
+        rootX = bounds.getX();
+        rootY = bounds.getY();
+        rootWidth = bounds.getWidth();
+        rootHeight = bounds.getHeight();
+        addNode();
+    }
+
+    /*
+     * Clears the tree, the backing arrays are kept for reuse
+     */
+    public void clear() {
+        pointX.clear();
+        pointY.clear();
+        pointId.clear();
+        pointNext.clear();
+        firstChild.clear();
+        leafHead.clear();
+        leafCount.clear();
+        outsideHead = NONE;
+        addNode();
+    }
+
+    public int size() {
+        return pointId.size;
+    }
+
+    /*
+     * Insert a point. The id is handed back by the queries.
+     */
+    public void insert(int id, float x, float y) {
+        int point = pointId.size;
+        pointX.add(x);
+        pointY.add(y);
+        pointId.add(id);
+        pointNext.add(NONE);
+
+        if (!(x >= rootX && x <= rootX + rootWidth && y >= rootY && y <= rootY + rootHeight)) {
+            pointNext.set(point, outsideHead);
+            outsideHead = point;
+            return;
+        }
+
+        int node = 0;
+        int level = 1;
+        float nodeX = rootX;
+        float nodeY = rootY;
+        float width = rootWidth;
+        float height = rootHeight;
+
+        while (firstChild.get(node) != NONE) {
+            width /= 2;
+            height /= 2;
+            int index = getIndex(x, y, nodeX + width, nodeY + height);
+            if (index == 0 || index == 3) {
+                nodeX += width;
+            }
+            if (index == 2 || index == 3) {
+                nodeY += height;
+            }
+            node = firstChild.get(node) + index;
+            level++;
+        }
+
+        addToLeaf(node, point);
+
+        if (leafCount.get(node) > MAX_POINTS && level < MAX_LEVELS) {
+            subdivide(node, nodeX, nodeY, width, height, level);
+        }
+    }
+
+    /*
+     * Add the ids of all points inside the area to returnIds
+     */
+    public IntArray retrieve(IntArray returnIds, Rectangle area) {
+        float minX = area.getX();
+        float minY = area.getY();
+        float maxX = minX + area.getWidth();
+        float maxY = minY + area.getHeight();
+        retrieve(returnIds, 0, rootX, rootY, rootWidth, rootHeight, minX, minY, maxX, maxY);
+
+        for (int point = outsideHead; point != NONE; point = pointNext.get(point)) {
+            float px = pointX.get(point);
+            float py = pointY.get(point);
+            if (px >= minX && px <= maxX && py >= minY && py <= maxY) {
+                returnIds.add(pointId.get(point));
+            }
+        }
+        return returnIds;
+    }
+
+    /*
+     * Add the ids of all points within radius of x, y to returnIds
+     */
+    public IntArray retrieve(IntArray returnIds, float x, float y, float radius) {
+        float radius2 = radius * radius;
+        retrieve(returnIds, 0, rootX, rootY, rootWidth, rootHeight, x, y, radius2);
+
+        for (int point = outsideHead; point != NONE; point = pointNext.get(point)) {
+            float dx = pointX.get(point) - x;
+            float dy = pointY.get(point) - y;
+            if (dx * dx + dy * dy <= radius2) {
+                returnIds.add(pointId.get(point));
+            }
+        }
+        return returnIds;
+    }
+
+    /*
+     * Add the ids of the k points closest to x, y to returnIds,
+     * closest first. Fewer are returned if the tree holds less than k.
+     */
+    public IntArray nearest(IntArray returnIds, float x, float y, int k) {
+        if (k <= 0) {
+            return returnIds;
+        }
+        if (nearestId.length < k) {
+            nearestId = new int[k];
+            nearestDistance = new float[k];
+        }
+        nearestFound = 0;
+
+        // the points outside have no node box to prune with
+        for (int point = outsideHead; point != NONE; point = pointNext.get(point)) {
+            float dx = pointX.get(point) - x;
+            float dy = pointY.get(point) - y;
+            offerNearest(pointId.get(point), dx * dx + dy * dy, k);
+        }
+
+        nearest(0, rootX, rootY, rootWidth, rootHeight, x, y, k);
+
+        for (int i = 0; i < nearestFound; i++) {
+            returnIds.add(nearestId[i]);
+        }
+        return returnIds;
+    }
+
+    /*
+     * Same quadrant numbering as QuadTree, 0 and 3 are on the right,
+     * 2 and 3 are above the horizontal midpoint
+     */
+    private int getIndex(float x, float y, float verticalMidpoint, float horizontalMidpoint) {
+        if (x < verticalMidpoint) {
+            return y < horizontalMidpoint ? 1 : 2;
+        }
+        return y < horizontalMidpoint ? 0 : 3;
+    }
+
+    private int addNode() {
+        firstChild.add(NONE);
+        leafHead.add(NONE);
+        leafCount.add(0);
+        return firstChild.size - 1;
+    }
+
+    private void addToLeaf(int node, int point) {
+        pointNext.set(point, leafHead.get(node));
+        leafHead.set(node, point);
+        leafCount.set(node, leafCount.get(node) + 1);
+    }
+
+    /*
+     * Turn the leaf into four children and move its points into them.
+     * A child that is still over capacity splits again.
+     */
+    private void subdivide(int node, float x, float y, float width, float height, int level) {
+        float subWidth = width / 2;
+        float subHeight = height / 2;
+
+        int first = addNode();
+        addNode();
+        addNode();
+        addNode();
+        firstChild.set(node, first);
+
+        int point = leafHead.get(node);
+        while (point != NONE) {
+            int next = pointNext.get(point);
+            int index = getIndex(pointX.get(point), pointY.get(point), x + subWidth, y + subHeight);
+            addToLeaf(first + index, point);
+            point = next;
+        }
+        leafHead.set(node, NONE);
+        leafCount.set(node, 0);
+
+        if (level + 1 >= MAX_LEVELS) {
+            return;
+        }
+        if (leafCount.get(first) > MAX_POINTS) {
+            subdivide(first, x + subWidth, y, subWidth, subHeight, level + 1);
+        }
+        if (leafCount.get(first + 1) > MAX_POINTS) {
+            subdivide(first + 1, x, y, subWidth, subHeight, level + 1);
+        }
+        if (leafCount.get(first + 2) > MAX_POINTS) {
+            subdivide(first + 2, x, y + subHeight, subWidth, subHeight, level + 1);
+        }
+        if (leafCount.get(first + 3) > MAX_POINTS) {
+            subdivide(first + 3, x + subWidth, y + subHeight, subWidth, subHeight, level + 1);
+        }
+    }
+
+    private void retrieve(IntArray returnIds, int node, float x, float y, float width, float height,
+                          float minX, float minY, float maxX, float maxY) {
+
+        if (x > maxX || x + width < minX || y > maxY || y + height < minY) {
+            return;
+        }
+
+        int first = firstChild.get(node);
+        if (first == NONE) {
+            // whole leaf is inside the area, no need to test each point
+            boolean inside = x >= minX && x + width <= maxX && y >= minY && y + height <= maxY;
+            for (int point = leafHead.get(node); point != NONE; point = pointNext.get(point)) {
+                if (inside) {
+                    returnIds.add(pointId.get(point));
+                    continue;
+                }
+                float px = pointX.get(point);
+                float py = pointY.get(point);
+                if (px >= minX && px <= maxX && py >= minY && py <= maxY) {
+                    returnIds.add(pointId.get(point));
+                }
+            }
+            return;
+        }
+
+        float subWidth = width / 2;
+        float subHeight = height / 2;
+        retrieve(returnIds, first, x + subWidth, y, subWidth, subHeight, minX, minY, maxX, maxY);
+        retrieve(returnIds, first + 1, x, y, subWidth, subHeight, minX, minY, maxX, maxY);
+        retrieve(returnIds, first + 2, x, y + subHeight, subWidth, subHeight, minX, minY, maxX, maxY);
+        retrieve(returnIds, first + 3, x + subWidth, y + subHeight, subWidth, subHeight, minX, minY, maxX, maxY);
+    }
+
+    private void retrieve(IntArray returnIds, int node, float x, float y, float width, float height,
+                          float centreX, float centreY, float radius2) {
+
+        if (distanceSquared(x, y, width, height, centreX, centreY) > radius2) {
+            return;
+        }
+
+        int first = firstChild.get(node);
+        if (first == NONE) {
+            for (int point = leafHead.get(node); point != NONE; point = pointNext.get(point)) {
+                float dx = pointX.get(point) - centreX;
+                float dy = pointY.get(point) - centreY;
+                if (dx * dx + dy * dy <= radius2) {
+                    returnIds.add(pointId.get(point));
+                }
+            }
+            return;
+        }
+
+        float subWidth = width / 2;
+        float subHeight = height / 2;
+        retrieve(returnIds, first, x + subWidth, y, subWidth, subHeight, centreX, centreY, radius2);
+        retrieve(returnIds, first + 1, x, y, subWidth, subHeight, centreX, centreY, radius2);
+        retrieve(returnIds, first + 2, x, y + subHeight, subWidth, subHeight, centreX, centreY, radius2);
+        retrieve(returnIds, first + 3, x + subWidth, y + subHeight, subWidth, subHeight, centreX, centreY, radius2);
+    }
+
+    private void nearest(int node, float x, float y, float width, float height,
+                         float centreX, float centreY, int k) {
+
+        // can't beat the kth closest found so far
+        if (nearestFound == k
+                && distanceSquared(x, y, width, height, centreX, centreY) > nearestDistance[k - 1]) {
+            return;
+        }
+
+        int first = firstChild.get(node);
+        if (first == NONE) {
+            for (int point = leafHead.get(node); point != NONE; point = pointNext.get(point)) {
+                float dx = pointX.get(point) - centreX;
+                float dy = pointY.get(point) - centreY;
+                offerNearest(pointId.get(point), dx * dx + dy * dy, k);
+            }
+            return;
+        }
+
+        // closest quadrant first so the others are more likely to be pruned
+        float subWidth = width / 2;
+        float subHeight = height / 2;
+        int closest = getIndex(centreX, centreY, x + subWidth, y + subHeight);
+        for (int i = 0; i < 4; i++) {
+            int index = (closest + i) % 4;
+            float childX = (index == 0 || index == 3) ? x + subWidth : x;
+            float childY = (index == 2 || index == 3) ? y + subHeight : y;
+            nearest(first + index, childX, childY, subWidth, subHeight, centreX, centreY, k);
+        }
+    }
+
+    /*
+     * Insertion into the sorted k nearest, the furthest drops off the end
+     */
+    private void offerNearest(int id, float distance2, int k) {
+        if (nearestFound == k) {
+            if (distance2 >= nearestDistance[k - 1]) {
+                return;
+            }
+            nearestFound--;
+        }
+
+        int i = nearestFound;
+        while (i > 0 && nearestDistance[i - 1] > distance2) {
+            nearestDistance[i] = nearestDistance[i - 1];
+            nearestId[i] = nearestId[i - 1];
+            i--;
+        }
+        nearestDistance[i] = distance2;
+        nearestId[i] = id;
+        nearestFound++;
+    }
+
+    /*
+     * Squared distance from a point to the closest edge of a node,
+     * 0 when the point is inside
+     */
+    private static float distanceSquared(float x, float y, float width, float height, float px, float py) {
+        float dx = Math.max(Math.max(x - px, 0), px - (x + width));
+        float dy = Math.max(Math.max(y - py, 0), py - (y + height));
+        return dx * dx + dy * dy;
+    }
+}
@@ -1,33 +1,196 @@
 package uk.co.adeveloperabroad;
 
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
 
-public class QuadTree {
+public class QuadTree<T> {
 
     public int MAX_OBJECTS = 2;
     private int MAX_LEVELS = 4;
+    // how far from the origin the root can grow, anything further
+    // out is kept at the root
+    private static final float MAX_COORDINATE = 1 << 30;
+
+    // collision layers of objects inserted without any, they are in
+    // the first layer and interact with every layer
+    public static final int DEFAULT_CATEGORY = 1;
+    public static final int DEFAULT_MASK = -1;
+
+    // getQuadrant() by left 1, right 2, bottom 4, top 8
+    private static final int[] QUADRANTS = {4, 4, 4, 4, 4, 1, 0, 4, 4, 2, 3, 4, 4, 4, 4, 4};
 
     public int level;
-    public Array<Rectangle> objects;
-    public Rectangle bounds;
-    public QuadTree[] nodes;
+    public Array<T> objects;
+    public QuadTree<T>[] nodes;
+
+    // collision layers of each object, category then mask, alongside
+    // objects. Two objects interact when each one's category is in the
+    // other's mask. null until an object not in the default layers
+    // arrives, most nodes never need it.
+    private IntArray layers;
+    // every category and mask bit used in this node and below it
+    private int subtreeCategories;
+    private int subtreeMasks;
+    // box around every object in this node and below it. Objects can
+    // hang out of their quadrant, or be outside the root altogether,
+    // so the quadrant can't be used to tell what a node might hold.
+    // Empty has min above max so nothing overlaps it.
+    private float subtreeMinX = Float.POSITIVE_INFINITY;
+    private float subtreeMinY = Float.POSITIVE_INFINITY;
+    private float subtreeMaxX = Float.NEGATIVE_INFINITY;
+    private float subtreeMaxY = Float.NEGATIVE_INFINITY;
+
+    // nodes don't keep their bounds, only the root does. A node knows
+    // the quadrant taken at each level below the root, two bits per
+    // level, and its bounds are worked out from the root when needed.
+    // The midpoints used by getIndex are worked out once up front.
+    private final Context<T> context;
+    private final int path;
+    private float verticalMidpoint;
+    private float horizontalMidpoint;
+
+    /*
+     * Everything the nodes of one tree share, held once by the tree
+     * rather than on every node
+     */
+    private static class Context<T> {
+        QuadTree<T> root;
+        Rectangle bounds;
+        // bounds handed to the constructor, clear() goes back to them
+        final Rectangle homeBounds;
+        Rectangle grownBounds;
+        boolean autoResize = false;
+        // set while growToFit puts the objects back
+        boolean resizing = false;
+        Array<T> resizeObjects;
+        IntArray resizeCategories;
+        IntArray resizeMasks;
+        final BoundsProvider<T> boundsProvider;
+        // objects and node bounds are read into it
+        final Rectangle scratch = new Rectangle();
+        // what the camera sees, for queryVisible
+        Rectangle cameraArea;
+        Batch<T> batch;
+        // objects of the nodes above the current one during a pair pass
+        Array<T> ancestors;
+        IntArray ancestorCategories;
+        IntArray ancestorMasks;
+
+        Context(Rectangle bounds, BoundsProvider<T> boundsProvider) {
+            this.bounds = bounds;
+            this.homeBounds = bounds;
+            this.boundsProvider = boundsProvider;
+        }
+    }
+
+    /*
+     * retrieveBatch() working space, made the first time it's used.
+     *
+     * A query that fits in a child at every node on its way down gets
+     * the objects of the node it ends at and of each node above it,
+     * the same for every such query ending there. That chain is written
+     * to the results once and copied whole for the others. A query
+     * that straddles a line starts its chain at that node, and the
+     * nodes it reaches below are kept as visits.
+     */
+    private static class Batch<T> {
+        // stack of the queries at each node, the top slice is the
+        // current node's. ~query once the query has straddled a line
+        final IntArray active = new IntArray();
+        final IntArray index = new IntArray();
+        // the query areas, read once
+        final FloatArray queryX = new FloatArray();
+        final FloatArray queryY = new FloatArray();
+        final FloatArray queryRight = new FloatArray();
+        final FloatArray queryTop = new FloatArray();
+        final int[] counts = new int[5];
+        final int[] cursors = new int[4];
+        final int[] straddleCursors = new int[4];
+        // nodes in the order they're reached, with their parent, the
+        // size of their chain and where it was first written, -1 before
+        final Array<QuadTree<T>> nodes = new Array<QuadTree<T>>();
+        final IntArray parents = new IntArray();
+        final IntArray chainSizes = new IntArray();
+        final IntArray chainStarts = new IntArray();
+        // the node each query's chain starts at
+        final IntArray chains = new IntArray();
+        // nodes reached after straddling, in the order retrieve() would
+        final IntArray visitQueries = new IntArray();
+        final IntArray visitNodes = new IntArray();
+        // visits sorted by query
+        final IntArray visitEnds = new IntArray();
+        final IntArray order = new IntArray();
+    }
 
     /*
      * Constructor
      */
-    public QuadTree(int level, Rectangle bounds) {
+    public QuadTree(int level, Rectangle bounds, BoundsProvider<T> boundsProvider) {
+        this(new Context<T>(bounds, boundsProvider), level, 0,
+                bounds.getX() + bounds.getWidth() / 2, bounds.getY() + bounds.getHeight() / 2);
+        context.root = this;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private QuadTree(Context<T> context, int level, int path, float verticalMidpoint, float horizontalMidpoint) {
+        this.context = context;
         this.level = level;
-        objects = new Array<Rectangle>();
-        this.bounds = bounds;
+        this.path = path;
+        this.verticalMidpoint = verticalMidpoint;
+        this.horizontalMidpoint = horizontalMidpoint;
+        objects = new Array<T>();
         nodes = new QuadTree[4];
     }
 
+    /*
+     * Write the bounds of this node into out and return it
+     */
+    public Rectangle getBounds(Rectangle out) {
+        out.set(context.bounds);
+
+        // replay subdivide() down the path
+        for (int shift = 2 * (level - context.root.level - 1); shift >= 0; shift -= 2) {
+            int subWidth = (int)(out.getWidth() / 2);
+            int subHeight = (int)(out.getHeight() / 2);
+            int x = (int)out.getX();
+            int y = (int)out.getY();
+            int index = (path >> shift) & 3;
+
+            out.set(index == 0 || index == 3 ? x + subWidth : x,
+                    index == 2 || index == 3 ? y + subHeight : y,
+                    subWidth, subHeight);
+        }
+        return out;
+    }
+
+    /*
+     * When on, an object inserted outside the root refits the root
+     * around it and the objects already in the tree, instead of it
+     * being kept at the root where every query returns it. clear()
+     * puts the root back to its original bounds.
+     */
+    public void setAutoResize(boolean autoResize) {
+        context.autoResize = autoResize;
+    }
+
     /*
      * Clears the QuadTree
      */
     public void clear() {
         objects.clear();
+        if (layers != null) {
+            layers.clear();
+        }
+        subtreeCategories = 0;
+        subtreeMasks = 0;
+        subtreeMinX = Float.POSITIVE_INFINITY;
+        subtreeMinY = Float.POSITIVE_INFINITY;
+        subtreeMaxX = Float.NEGATIVE_INFINITY;
+        subtreeMaxY = Float.NEGATIVE_INFINITY;
 
         for (int i = 0; i < nodes.length; i++) {
             if (nodes[i] != null) {
@@ -35,6 +198,113 @@ public class QuadTree {
                 nodes[i] = null;
             }
         }
+
+        if (this == context.root && context.bounds != context.homeBounds) {
+            setRootBounds(context.homeBounds);
+        }
+    }
+
+    private void setRootBounds(Rectangle rootBounds) {
+        context.bounds = rootBounds;
+        verticalMidpoint = rootBounds.getX() + rootBounds.getWidth() / 2;
+        horizontalMidpoint = rootBounds.getY() + rootBounds.getHeight() / 2;
+    }
+
+    /*
+     * Refit the root around the new object and everything already in
+     * the tree, then put everything back in. The root moves to where
+     * the objects are, it doesn't have to keep the home bounds inside
+     * it, so a world that streams away from home doesn't pile up in
+     * one deep leaf. It's never smaller than home, and half as big
+     * again as the objects so the next ones nearby fit without another
+     * rebuild. The old root can't just become a child of the new one,
+     * subdivide() truncates to int so the quadrants don't line up.
+     */
+    private void growToFit(Rectangle pRect) {
+        Rectangle bounds = context.bounds;
+        if (pRect.getX() >= bounds.getX() && pRect.getY() >= bounds.getY()
+                && pRect.getX() + pRect.getWidth() <= bounds.getX() + bounds.getWidth()
+                && pRect.getY() + pRect.getHeight() <= bounds.getY() + bounds.getHeight()) {
+            return;
+        }
+        // NaN or far away, leave it at the root
+        if (!inReach(pRect)) {
+            return;
+        }
+
+        // pRect is the scratch rectangle, read it before it's reused
+        float minX = pRect.getX();
+        float minY = pRect.getY();
+        float maxX = minX + pRect.getWidth();
+        float maxY = minY + pRect.getHeight();
+
+        if (context.resizeObjects == null) {
+            context.resizeObjects = new Array<T>();
+            context.resizeCategories = new IntArray();
+            context.resizeMasks = new IntArray();
+            context.grownBounds = new Rectangle();
+        }
+        Array<T> resizeObjects = context.resizeObjects;
+        IntArray resizeCategories = context.resizeCategories;
+        IntArray resizeMasks = context.resizeMasks;
+        resizeObjects.clear();
+        resizeCategories.clear();
+        resizeMasks.clear();
+        collect(resizeObjects, resizeCategories, resizeMasks);
+
+        for (int i = 0; i < resizeObjects.size; i++) {
+            Rectangle objectBounds = getObjectBounds(resizeObjects.get(i), context.scratch);
+            if (inReach(objectBounds)) {
+                minX = Math.min(minX, objectBounds.getX());
+                minY = Math.min(minY, objectBounds.getY());
+                maxX = Math.max(maxX, objectBounds.getX() + objectBounds.getWidth());
+                maxY = Math.max(maxY, objectBounds.getY() + objectBounds.getHeight());
+            }
+        }
+
+        Rectangle homeBounds = context.homeBounds;
+        float width = Math.max((maxX - minX) * 1.5f, homeBounds.getWidth());
+        float height = Math.max((maxY - minY) * 1.5f, homeBounds.getHeight());
+        // whole numbers, as subdivide() would make them
+        float x = (float)Math.floor((minX + maxX - width) / 2);
+        float y = (float)Math.floor((minY + maxY - height) / 2);
+        width = (float)Math.ceil(width) + 1;
+        height = (float)Math.ceil(height) + 1;
+
+        clear();
+        setRootBounds(context.grownBounds.set(x, y, width, height));
+        // objects out of reach, or that float rounding near the reach
+        // limit leaves just outside the new root, stay at the root,
+        // growing again from in here would clear the lists being read
+        context.resizing = true;
+        for (int i = 0; i < resizeObjects.size; i++) {
+            insert(resizeObjects.get(i), resizeCategories.get(i), resizeMasks.get(i));
+        }
+        context.resizing = false;
+        resizeObjects.clear();
+    }
+
+    /*
+     * Whether the root can be grown to take the area, subdivide()
+     * truncates to int so the root has to stay well inside int range
+     */
+    private static boolean inReach(Rectangle pRect) {
+        return pRect.getX() >= -MAX_COORDINATE && pRect.getY() >= -MAX_COORDINATE
+                && pRect.getX() + pRect.getWidth() <= MAX_COORDINATE
+                && pRect.getY() + pRect.getHeight() <= MAX_COORDINATE;
+    }
+
+    private void collect(Array<T> allObjects, IntArray allCategories, IntArray allMasks) {
+        allObjects.addAll(objects);
+        for (int i = 0; i < objects.size; i++) {
+            allCategories.add(categoryOf(i));
+            allMasks.add(maskOf(i));
+        }
+        if (nodes[0] != null) {
+            for (int i = 0; i < 4; i++) {
+                nodes[i].collect(allObjects, allCategories, allMasks);
+            }
+        }
     }
 
     /*
@@ -42,15 +312,22 @@ public class QuadTree {
      */
     private void subdivide() {
 
-        int subWidth = (int)(bounds.getWidth() / 2);
-        int subHeight = (int)(bounds.getHeight() / 2);
-        int x = (int)bounds.getX();
-        int y = (int)bounds.getY();
+        // nothing else is using the scratch rectangle at this point
+        Rectangle nodeBounds = getBounds(context.scratch);
+        int subWidth = (int)(nodeBounds.getWidth() / 2);
+        int subHeight = (int)(nodeBounds.getHeight() / 2);
+        int x = (int)nodeBounds.getX();
+        int y = (int)nodeBounds.getY();
+        // midpoints of the children
+        float right = x + subWidth + subWidth / 2f;
+        float left = x + subWidth / 2f;
+        float bottom = y + subHeight / 2f;
+        float top = y + subHeight + subHeight / 2f;
 
-        nodes[0] = new QuadTree(level+1, new Rectangle(x + subWidth, y, subWidth, subHeight));
-        nodes[1] = new QuadTree(level+1, new Rectangle(x, y, subWidth, subHeight));
-        nodes[2] = new QuadTree(level+1, new Rectangle(x, y + subHeight, subWidth, subHeight));
-        nodes[3] = new QuadTree(level+1, new Rectangle(x + subWidth, y + subHeight, subWidth, subHeight));
+        nodes[0] = new QuadTree<T>(context, level+1, (path << 2) | 0, right, bottom);
+        nodes[1] = new QuadTree<T>(context, level+1, (path << 2) | 1, left, bottom);
+        nodes[2] = new QuadTree<T>(context, level+1, (path << 2) | 2, left, top);
+        nodes[3] = new QuadTree<T>(context, level+1, (path << 2) | 3, right, top);
     }
 
     /*
@@ -60,8 +337,6 @@ public class QuadTree {
      */
     private int getIndex(Rectangle pRect) {
         int index = -1;
-        double verticalMidpoint = bounds.getX() + (bounds.getWidth() / 2);
-        double horizontalMidpoint = bounds.getY() + (bounds.getHeight() / 2);
 
         // Object can completely fit within the top quadrants
         boolean topQuadrant = (pRect.getY() < horizontalMidpoint && pRect.getY() + pRect.getHeight() < horizontalMidpoint);
@@ -90,23 +365,106 @@ public class QuadTree {
         return index;
     }
 
+    /*
+     * getIndex() for retrieveBatch(), 4 instead of -1 for an area that
+     * doesn't fit in a child. Looked up rather than branched on, the
+     * queries come in no particular order so branches would often be
+     * guessed wrong.
+     */
+    private int getQuadrant(float x, float y, float right, float top) {
+        int left = x < verticalMidpoint & right < verticalMidpoint ? 1 : 0;
+        int rightSide = x > verticalMidpoint ? 2 : 0;
+        int bottom = y < horizontalMidpoint & top < horizontalMidpoint ? 4 : 0;
+        int topSide = y > horizontalMidpoint ? 8 : 0;
+        return QUADRANTS[left | rightSide | bottom | topSide];
+    }
+
+    private int getIndex(T object) {
+        return getIndex(context.boundsProvider.getBounds(object, context.scratch));
+    }
+
+    Rectangle getObjectBounds(T object, Rectangle out) {
+        return context.boundsProvider.getBounds(object, out);
+    }
+
+    private int categoryOf(int i) {
+        return layers == null ? DEFAULT_CATEGORY : layers.get(2 * i);
+    }
+
+    private int maskOf(int i) {
+        return layers == null ? DEFAULT_MASK : layers.get(2 * i + 1);
+    }
+
+    /*
+     * Call after adding the object to objects
+     */
+    private void addLayers(int category, int mask) {
+        if (layers == null) {
+            if (category == DEFAULT_CATEGORY && mask == DEFAULT_MASK) {
+                return;
+            }
+            // the objects before this one are all in the default layers
+            layers = new IntArray(2 * objects.size);
+            for (int i = 0; i < objects.size - 1; i++) {
+                layers.add(DEFAULT_CATEGORY);
+                layers.add(DEFAULT_MASK);
+            }
+        }
+        layers.add(category);
+        layers.add(mask);
+    }
+
+    private void removeLayers(int i) {
+        if (layers != null) {
+            layers.removeIndex(2 * i + 1);
+            layers.removeIndex(2 * i);
+        }
+    }
+
+    private static boolean interacts(int category, int mask, int otherCategory, int otherMask) {
+        return (category & otherMask) != 0 && (otherCategory & mask) != 0;
+    }
+
+    /*
+     * Insert the object into the QuadTree in the default collision layer
+     */
+    public void insert(T object) {
+        insert(object, DEFAULT_CATEGORY, DEFAULT_MASK);
+    }
+
     /*
      * Insert the object into the QuadTree. If the node
      * exceeds the capacity, it will split and add all
      * objects to their corresponding nodes.
+     * category is the layers the object is in, mask the
+     * layers it can collide with.
      */
-    public void insert(Rectangle pRect) {
+    public void insert(T object, int category, int mask) {
+        if (this == context.root && context.autoResize && !context.resizing) {
+            growToFit(getObjectBounds(object, context.scratch));
+        }
+
+        subtreeCategories |= category;
+        subtreeMasks |= mask;
+
+        Rectangle pRect = getObjectBounds(object, context.scratch);
+        subtreeMinX = Math.min(subtreeMinX, pRect.getX());
+        subtreeMinY = Math.min(subtreeMinY, pRect.getY());
+        subtreeMaxX = Math.max(subtreeMaxX, pRect.getX() + pRect.getWidth());
+        subtreeMaxY = Math.max(subtreeMaxY, pRect.getY() + pRect.getHeight());
+
         if (nodes[0] != null) {
             int index = getIndex(pRect);
 
             if (index != -1) {
-                nodes[index].insert(pRect);
+                nodes[index].insert(object, category, mask);
 
                 return;
             }
         }
 
-        objects.add(pRect);
+        objects.add(object);
+        addLayers(category, mask);
 
         if (objects.size > MAX_OBJECTS && level < MAX_LEVELS) {
             if (nodes[0] == null) {
@@ -117,7 +475,10 @@ public class QuadTree {
             while (i < objects.size) {
                 int index = getIndex(objects.get(i));
                 if (index != -1) {
-                    nodes[index].insert(objects.removeIndex(i));
+                    int objectCategory = categoryOf(i);
+                    int objectMask = maskOf(i);
+                    removeLayers(i);
+                    nodes[index].insert(objects.removeIndex(i), objectCategory, objectMask);
                 }
                 else {
                     i++;
@@ -129,7 +490,16 @@ public class QuadTree {
     /*
      * Return all objects that could collide with the given object
      */
-    public Array retrieve(Array returnObjects, Rectangle pRect) {
+    public Array<T> retrieveFor(Array<T> returnObjects, T object) {
+        // retrieve only reads the area so the scratch rectangle can be passed down
+        Rectangle pRect = context.boundsProvider.getBounds(object, context.scratch);
+        return retrieve(returnObjects, pRect);
+    }
+
+    /*
+     * Return all objects that could collide with the given area
+     */
+    public Array<T> retrieve(Array<T> returnObjects, Rectangle pRect) {
         int index = getIndex(pRect);
         if (index != -1 && nodes[0] != null) {
             nodes[index].retrieve(returnObjects, pRect);
@@ -145,5 +515,398 @@ public class QuadTree {
         returnObjects.addAll(objects);
         return returnObjects;
     }
-}
 
+    /*
+     * Return all objects that could collide with the given object,
+     * leaving out those whose collision layers it can't interact with
+     */
+    public Array<T> retrieveFor(Array<T> returnObjects, T object, int category, int mask) {
+        Rectangle pRect = context.boundsProvider.getBounds(object, context.scratch);
+        return retrieve(returnObjects, pRect, category, mask);
+    }
+
+    /*
+     * Return all objects that could collide with the given area,
+     * leaving out those whose collision layers it can't interact with
+     */
+    public Array<T> retrieve(Array<T> returnObjects, Rectangle pRect, int category, int mask) {
+        // nothing down here can interact
+        if (!interacts(category, mask, subtreeCategories, subtreeMasks)) {
+            return returnObjects;
+        }
+
+        int index = getIndex(pRect);
+        if (index != -1 && nodes[0] != null) {
+            nodes[index].retrieve(returnObjects, pRect, category, mask);
+        }
+
+        // get all objects below this as it doesn't fit (intersects line)
+        if(index == -1 && nodes[0] != null) {
+            for (int i = 0; i < 4; i++) {
+                nodes[i].retrieve(returnObjects, pRect, category, mask);
+            }
+        }
+
+        for (int i = 0; i < objects.size; i++) {
+            if (interacts(category, mask, categoryOf(i), maskOf(i))) {
+                returnObjects.add(objects.get(i));
+            }
+        }
+        return returnObjects;
+    }
+
+    /*
+     * retrieve() for many areas at once. The tree is walked once with
+     * all the queries, then the objects each query reached are copied
+     * into the results a node, or a whole chain of nodes, at a time.
+     *
+     * The results come back flat, the objects for query i are
+     * results[offsets[i]] up to results[offsets[i + 1]], in the same
+     * order retrieve() would give. offsets and results are cleared first.
+     */
+    public void retrieveBatch(Array<Rectangle> queries, IntArray offsets, Array<T> results) {
+        if (context.batch == null) {
+            context.batch = new Batch<T>();
+        }
+        Batch<T> batch = context.batch;
+        batch.active.clear();
+        batch.chains.clear();
+        batch.queryX.clear();
+        batch.queryY.clear();
+        batch.queryRight.clear();
+        batch.queryTop.clear();
+        batch.active.ensureCapacity(queries.size);
+        batch.chains.ensureCapacity(queries.size);
+        for (int i = 0; i < queries.size; i++) {
+            Rectangle query = queries.get(i);
+            batch.queryX.add(query.getX());
+            batch.queryY.add(query.getY());
+            batch.queryRight.add(query.getX() + query.getWidth());
+            batch.queryTop.add(query.getY() + query.getHeight());
+            batch.active.add(i);
+            batch.chains.add(-1);
+        }
+        batch.nodes.clear();
+        batch.parents.clear();
+        batch.chainSizes.clear();
+        batch.visitQueries.clear();
+        batch.visitNodes.clear();
+        if (queries.size > 0) {
+            retrieveBatch(batch, -1, 0, queries.size);
+        }
+
+        // objects and visits per query, then where each query starts
+        offsets.clear();
+        batch.visitEnds.clear();
+        offsets.ensureCapacity(queries.size + 1);
+        batch.visitEnds.ensureCapacity(queries.size + 1);
+        offsets.add(0);
+        batch.visitEnds.add(0);
+        int[] chains = batch.chains.items;
+        int[] chainSizes = batch.chainSizes.items;
+        for (int i = 0; i < queries.size; i++) {
+            offsets.add(chainSizes[chains[i]]);
+            batch.visitEnds.add(0);
+        }
+        int[] offsetItems = offsets.items;
+        int[] visitEnds = batch.visitEnds.items;
+        int[] visitQueries = batch.visitQueries.items;
+        int[] visitNodes = batch.visitNodes.items;
+        int visits = batch.visitQueries.size;
+        for (int i = 0; i < visits; i++) {
+            offsetItems[visitQueries[i] + 1] += batch.nodes.get(visitNodes[i]).objects.size;
+            visitEnds[visitQueries[i] + 1]++;
+        }
+        for (int i = 0; i < queries.size; i++) {
+            offsetItems[i + 1] += offsetItems[i];
+            visitEnds[i + 1] += visitEnds[i];
+        }
+
+        // each query's visits together, still in the order they were
+        // made. visitEnds[i] moves on to the end of query i's
+        batch.order.clear();
+        batch.order.ensureCapacity(visits);
+        int[] order = batch.order.items;
+        for (int i = 0; i < visits; i++) {
+            order[visitEnds[visitQueries[i]]++] = i;
+        }
+
+        batch.chainStarts.clear();
+        batch.chainStarts.ensureCapacity(batch.nodes.size);
+        for (int i = 0; i < batch.nodes.size; i++) {
+            batch.chainStarts.add(-1);
+        }
+        int[] chainStarts = batch.chainStarts.items;
+        int[] parents = batch.parents.items;
+
+        // written out front to back, the visits then the chain
+        int total = offsetItems[queries.size];
+        results.clear();
+        results.ensureCapacity(total);
+        Object[] resultItems = results.items;
+        int end = 0;
+        int visit = 0;
+        for (int i = 0; i < queries.size; i++) {
+            for (; visit < visitEnds[i]; visit++) {
+                Array<T> nodeObjects = batch.nodes.get(visitNodes[order[visit]]).objects;
+                System.arraycopy(nodeObjects.items, 0, resultItems, end, nodeObjects.size);
+                end += nodeObjects.size;
+            }
+
+            int chain = chains[i];
+            if (chainStarts[chain] != -1) {
+                System.arraycopy(resultItems, chainStarts[chain], resultItems, end, chainSizes[chain]);
+                end += chainSizes[chain];
+                continue;
+            }
+            chainStarts[chain] = end;
+            for (int node = chain; node != -1; node = parents[node]) {
+                Array<T> nodeObjects = batch.nodes.get(node).objects;
+                System.arraycopy(nodeObjects.items, 0, resultItems, end, nodeObjects.size);
+                end += nodeObjects.size;
+            }
+        }
+        results.size = total;
+        batch.nodes.clear();
+    }
+
+    /*
+     * The queries in batch.active from up to to have reached this node
+     */
+    private void retrieveBatch(Batch<T> batch, int parent, int from, int to) {
+        int node = batch.nodes.size;
+        batch.nodes.add(this);
+        batch.parents.add(parent);
+        batch.chainSizes.add(objects.size + (parent == -1 ? 0 : batch.chainSizes.get(parent)));
+
+        IntArray active = batch.active;
+        int[] chains = batch.chains.items;
+
+        if (nodes[0] == null) {
+            // the end of the way down for those that never straddled
+            for (int i = from; i < to; i++) {
+                int query = active.items[i];
+                if (query >= 0) {
+                    chains[query] = node;
+                }
+            }
+        }
+        else {
+            IntArray index = batch.index;
+            index.clear();
+            index.ensureCapacity(to - from);
+            int[] indexItems = index.items;
+            int[] counts = batch.counts;
+            counts[0] = counts[1] = counts[2] = counts[3] = counts[4] = 0;
+            float[] queryX = batch.queryX.items;
+            float[] queryY = batch.queryY.items;
+            float[] queryRight = batch.queryRight.items;
+            float[] queryTop = batch.queryTop.items;
+            int[] activeItems = active.items;
+            for (int i = from; i < to; i++) {
+                int query = activeItems[i];
+                // ~query for those that straddled above
+                int q = query ^ (query >> 31);
+                int child = getQuadrant(queryX[q], queryY[q], queryRight[q], queryTop[q]);
+                indexItems[i - from] = child;
+                counts[child]++;
+            }
+            int count0 = counts[0];
+            int count1 = counts[1];
+            int count2 = counts[2];
+            int count3 = counts[3];
+            int straddling = counts[4];
+
+            // each child's queries then the straddling ones, which go
+            // to every child, laid out above everything on the stack
+            int top = active.size;
+            int start1 = top + count0 + straddling;
+            int start2 = start1 + count1 + straddling;
+            int start3 = start2 + count2 + straddling;
+            int end = start3 + count3 + straddling;
+            active.ensureCapacity(end - top);
+            int[] items = active.items;
+            int[] cursors = batch.cursors;
+            int[] straddleCursors = batch.straddleCursors;
+            cursors[0] = top;
+            cursors[1] = start1;
+            cursors[2] = start2;
+            cursors[3] = start3;
+            straddleCursors[0] = top + count0;
+            straddleCursors[1] = start1 + count1;
+            straddleCursors[2] = start2 + count2;
+            straddleCursors[3] = start3 + count3;
+            for (int i = from; i < to; i++) {
+                int query = items[i];
+                int child = indexItems[i - from];
+                if (child != 4) {
+                    items[cursors[child]++] = query;
+                }
+                else {
+                    if (query >= 0) {
+                        // its chain starts here
+                        chains[query] = node;
+                        query = ~query;
+                    }
+                    items[straddleCursors[0]++] = query;
+                    items[straddleCursors[1]++] = query;
+                    items[straddleCursors[2]++] = query;
+                    items[straddleCursors[3]++] = query;
+                }
+            }
+            active.size = end;
+
+            // children first, as in retrieve()
+            if (start1 > top) {
+                nodes[0].retrieveBatch(batch, node, top, start1);
+            }
+            if (start2 > start1) {
+                nodes[1].retrieveBatch(batch, node, start1, start2);
+            }
+            if (start3 > start2) {
+                nodes[2].retrieveBatch(batch, node, start2, start3);
+            }
+            if (end > start3) {
+                nodes[3].retrieveBatch(batch, node, start3, end);
+            }
+            active.size = top;
+        }
+
+        // those that straddled above reach this node's objects after
+        // its children's
+        if (objects.size > 0) {
+            for (int i = from; i < to; i++) {
+                int query = active.items[i];
+                if (query < 0) {
+                    batch.visitQueries.add(~query);
+                    batch.visitNodes.add(node);
+                }
+            }
+        }
+    }
+
+    /*
+     * Report the objects the camera can see. Rotation is ignored.
+     */
+    public void queryVisible(Camera camera, QueryCallback<T> callback) {
+        float zoom = camera instanceof OrthographicCamera ? ((OrthographicCamera) camera).zoom : 1;
+        float width = camera.viewportWidth * zoom;
+        float height = camera.viewportHeight * zoom;
+
+        if (context.cameraArea == null) {
+            context.cameraArea = new Rectangle();
+        }
+        Rectangle cameraArea = context.cameraArea;
+        cameraArea.set(camera.position.x - width / 2, camera.position.y - height / 2, width, height);
+        queryVisible(cameraArea, callback);
+    }
+
+    /*
+     * Report the objects overlapping the viewport. A node whose
+     * objects all lie inside the viewport is reported whole without
+     * testing each object.
+     */
+    public void queryVisible(Rectangle viewport, QueryCallback<T> callback) {
+        float minX = viewport.getX();
+        float minY = viewport.getY();
+        float maxX = minX + viewport.getWidth();
+        float maxY = minY + viewport.getHeight();
+
+        if (subtreeMinX > maxX || subtreeMaxX < minX || subtreeMinY > maxY || subtreeMaxY < minY) {
+            return;
+        }
+
+        if (subtreeMinX >= minX && subtreeMaxX <= maxX && subtreeMinY >= minY && subtreeMaxY <= maxY) {
+            reportAll(callback);
+            return;
+        }
+
+        for (int i = 0; i < objects.size; i++) {
+            T object = objects.get(i);
+            Rectangle pRect = context.boundsProvider.getBounds(object, context.scratch);
+            if (pRect.getX() <= maxX && pRect.getX() + pRect.getWidth() >= minX
+                    && pRect.getY() <= maxY && pRect.getY() + pRect.getHeight() >= minY) {
+                callback.report(object);
+            }
+        }
+
+        if (nodes[0] != null) {
+            for (int i = 0; i < 4; i++) {
+                nodes[i].queryVisible(viewport, callback);
+            }
+        }
+    }
+
+    private void reportAll(QueryCallback<T> callback) {
+        for (int i = 0; i < objects.size; i++) {
+            callback.report(objects.get(i));
+        }
+        if (nodes[0] != null) {
+            for (int i = 0; i < 4; i++) {
+                nodes[i].reportAll(callback);
+            }
+        }
+    }
+
+    /*
+     * Report every pair of objects that could collide, those in the
+     * same node or where one is in a node above the other and whose
+     * collision layers interact. Each pair is reported once and an
+     * object is never paired with itself.
+     */
+    public void pairs(PairCallback<T> callback) {
+        if (context.ancestors == null) {
+            context.ancestors = new Array<T>();
+            context.ancestorCategories = new IntArray();
+            context.ancestorMasks = new IntArray();
+        }
+        context.ancestors.clear();
+        context.ancestorCategories.clear();
+        context.ancestorMasks.clear();
+        pairs(callback, context.ancestors, context.ancestorCategories, context.ancestorMasks, 0, 0);
+    }
+
+    private void pairs(PairCallback<T> callback, Array<T> ancestors,
+                       IntArray ancestorCategories, IntArray ancestorMasks,
+                       int aboveCategories, int aboveMasks) {
+
+        // no pair inside this subtree and none with the objects above it
+        if (!interacts(subtreeCategories, subtreeMasks, subtreeCategories, subtreeMasks)
+                && !interacts(subtreeCategories, subtreeMasks, aboveCategories, aboveMasks)) {
+            return;
+        }
+
+        for (int i = 0; i < objects.size; i++) {
+            T object = objects.get(i);
+            int category = categoryOf(i);
+            int mask = maskOf(i);
+            for (int j = 0; j < ancestors.size; j++) {
+                if (interacts(ancestorCategories.get(j), ancestorMasks.get(j), category, mask)) {
+                    callback.pair(ancestors.get(j), object);
+                }
+            }
+            for (int j = i + 1; j < objects.size; j++) {
+                if (interacts(category, mask, categoryOf(j), maskOf(j))) {
+                    callback.pair(object, objects.get(j));
+                }
+            }
+        }
+
+        if (nodes[0] != null) {
+            int size = ancestors.size;
+            ancestors.addAll(objects);
+            for (int i = 0; i < objects.size; i++) {
+                ancestorCategories.add(categoryOf(i));
+                ancestorMasks.add(maskOf(i));
+                aboveCategories |= categoryOf(i);
+                aboveMasks |= maskOf(i);
+            }
+            for (int i = 0; i < 4; i++) {
+                nodes[i].pairs(callback, ancestors, ancestorCategories, ancestorMasks, aboveCategories, aboveMasks);
+            }
+            ancestors.truncate(size);
+            ancestorCategories.truncate(size);
+            ancestorMasks.truncate(size);
+        }
+    }
+}
@@ -7,7 +7,6 @@ import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
-import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.utils.Array;
@@ -20,7 +19,7 @@ public class QuadTreeStage extends Stage {
 
     private ShapeRenderer shapeRenderer = new ShapeRenderer();;
 
-    private QuadTree quadTree;
+    private LayeredQuadTree<Particle> quadTree;
     private float quadTreeWidth;
     private float quadTreeHeight;
     private float quadX = 10.0f;
@@ -28,8 +27,19 @@ public class QuadTreeStage extends Stage {
 
     private int numberParticles = 8;
     private float particleSize = 20.0f;
-    private Array<Particle> particles = new Array<Particle>(numberParticles);;
+    // same seed, same starting positions and directions every run
+    private long seed = 1L;
+    private Scenario scenario;
+    private Array<Particle> particles;
     private Array<Particle> returnObjects = new Array<Particle>();
+    private Rectangle nodeBounds = new Rectangle();
+    private Rectangle screenBounds = new Rectangle();
+    private QueryCallback<Particle> drawParticles = new QueryCallback<Particle>() {
+        @Override
+        public void report(Particle particle) {
+            drawParticle(particle);
+        }
+    };
 
     private BitmapFont distanceFont;
     private ShaderProgram fontShader;
@@ -41,11 +51,9 @@ public class QuadTreeStage extends Stage {
         this.viewport = viewport;
 
         setQuadTreeSize();
-        for (int i=0; i < numberParticles; i++) {
-            float randomX = MathUtils.random(quadX, quadX + quadTreeWidth);
-            float randomY = MathUtils.random(quadY, quadY + quadTreeHeight);
-            particles.add( new Particle(new Rectangle(randomX,randomY, particleSize, particleSize),i));
-        }
+        scenario = new Scenario(seed, numberParticles, particleSize,
+                new Rectangle(quadX, quadY, quadTreeWidth, quadTreeHeight));
+        particles = scenario.getParticles();
 
         setupFonts();
     }
@@ -53,16 +61,19 @@ public class QuadTreeStage extends Stage {
     @Override
     public void draw() {
 
-        //fresh tree
-        quadTree.clear();
+        //fresh tree for the moving particles
+        quadTree.clearDynamic();
         // particles in new position
-        moveParticles();
+        scenario.step(Gdx.graphics.getDeltaTime());
         // insert all particles into the tree
         insertParticles();
         // see which ones collided
         collisionCheck();
-        // draw tree includes particles
-        drawQuadTree(quadTree);
+        // draw tree
+        drawQuadTree(quadTree.getStaticTree());
+        drawQuadTree(quadTree.getDynamicTree());
+        // draw only the particles on screen
+        drawVisibleParticles();
         // add number on top of particles to make them easy to track
         numberParticles();
         super.draw();
@@ -78,10 +89,17 @@ public class QuadTreeStage extends Stage {
     }
 
     private void drawParticle(Particle particle) {
-        shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
         shapeRenderer.setColor(particle.getColour());
         shapeRenderer.rect(particle.getX(), particle.getY(),
                 particle.getWidth(), particle.getHeight());
+    }
+
+    private void drawVisibleParticles() {
+        // shape renderer draws in screen coordinates
+        screenBounds.set(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+
+        shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
+        quadTree.queryVisible(screenBounds, drawParticles);
         shapeRenderer.end();
     }
 
@@ -93,7 +111,7 @@ public class QuadTreeStage extends Stage {
         shapeRenderer.end();
     }
 
-    private void drawQuadTree(QuadTree node)
+    private void drawQuadTree(QuadTree<Particle> node)
     {
         if (node.nodes != null){
             for (int i=0; i < node.nodes.length; i++)
@@ -101,31 +119,8 @@ public class QuadTreeStage extends Stage {
                 if (node.nodes[i] != null)
                     drawQuadTree(node.nodes[i]);
             }
-            drawQuadrant(node.bounds.getX(), node.bounds.getY(), node.bounds.getWidth(), node.bounds.getHeight());
-        }
-
-        if (node.objects != null) {
-            for (Rectangle particle : node.objects) {
-                drawParticle((Particle) particle);
-            }
-        }
-    }
-
-    private void moveParticles() {
-
-        for(Particle particle : particles) {
-
-            if (isAtEdge(particle)) {
-                particle.changeDirection();
-            }
-
-            particle.setX(MathUtils.clamp(particle.getX() + particle.velocityX * Gdx.graphics.getDeltaTime(),
-                    quadX,
-                    quadX + quadTreeWidth - particle.getWidth())
-            );
-            particle.setY(MathUtils.clamp(particle.getY() + particle.velocityY * Gdx.graphics.getDeltaTime(),
-                    quadY,
-                    quadY + quadTreeHeight - particle.getHeight()));
+            node.getBounds(nodeBounds);
+            drawQuadrant(nodeBounds.getX(), nodeBounds.getY(), nodeBounds.getWidth(), nodeBounds.getHeight());
         }
     }
 
@@ -140,7 +135,7 @@ public class QuadTreeStage extends Stage {
         for (Particle particle: particles) {
             particle.collided = false;
             returnObjects.clear();
-            returnObjects = quadTree.retrieve(returnObjects, particle);
+            returnObjects = quadTree.retrieveFor(returnObjects, particle);
 
             for (Particle returnParticle : returnObjects)
             {
@@ -220,17 +215,6 @@ public class QuadTreeStage extends Stage {
         return hasCollided;
     }
 
-    private boolean isAtEdge(Particle particle) {
-        Boolean atEdge = false;
-        if (particle.getX() + particle.getWidth() >= quadX + quadTreeWidth
-                || particle.getX() <= quadX
-                || particle.getY()  <= quadY
-                || particle.getY() + particle.getHeight()  >= quadY + quadTreeHeight) {
-            atEdge = true;
-        }
-        return atEdge;
-    }
-
     private void setupFonts() {
 
         distanceFont = new BitmapFont(Gdx.files.internal("fonts/oswald-distance.fnt"));
@@ -250,7 +234,8 @@ public class QuadTreeStage extends Stage {
         quadTreeWidth = Gdx.graphics.getWidth() * 0.70f;
         quadTreeHeight = Gdx.graphics.getHeight() * 0.90f;
         Rectangle quadTreeSize = new Rectangle(quadX,quadY,quadTreeWidth, quadTreeHeight);
-        quadTree = new QuadTree(1, quadTreeSize);
+        quadTree = new LayeredQuadTree<Particle>(quadTreeSize, Particle.BOUNDS);
+        quadTree.getDynamicTree().setAutoResize(true);
     }
 
 }
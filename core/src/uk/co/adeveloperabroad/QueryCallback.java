@@ -0,0 +1,9 @@
+package uk.co.adeveloperabroad;
+
+/*
+ * Receives the objects found by a query, one call per object
+ */
+public interface QueryCallback<T> {
+
+    void report(T object);
+}
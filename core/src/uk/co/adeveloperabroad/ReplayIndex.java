@@ -0,0 +1,100 @@
+package uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+/*
+ * What TracePlayer needs from a spatial index, so different indexes
+ * can be timed against the same trace
+ */
+public interface ReplayIndex {
+
+    /*
+     * Called at the start of each tick
+     */
+    void clear();
+
+    void insert(int id, float x, float y, float width, float height);
+
+    /*
+     * Look up the candidates for an area and return how many there were
+     */
+    int query(float x, float y, float width, float height);
+
+    /*
+     * QuadTree over one reused rectangle per entity
+     */
+    class QuadTreeIndex implements ReplayIndex {
+
+        private final QuadTree<Rectangle> quadTree;
+        private final Array<Rectangle> boxes = new Array<Rectangle>();
+        private final Array<Rectangle> returnObjects = new Array<Rectangle>();
+        private final Rectangle area = new Rectangle();
+
+        public QuadTreeIndex(Rectangle bounds) {
+            quadTree = new QuadTree<Rectangle>(1, bounds, BoundsProvider.RECTANGLE);
+        }
+
+        public QuadTree<Rectangle> getQuadTree() {
+            return quadTree;
+        }
+
+        @Override
+        public void clear() {
+            quadTree.clear();
+        }
+
+        @Override
+        public void insert(int id, float x, float y, float width, float height) {
+            while (boxes.size <= id) {
+                boxes.add(new Rectangle());
+            }
+            quadTree.insert(boxes.get(id).set(x, y, width, height));
+        }
+
+        @Override
+        public int query(float x, float y, float width, float height) {
+            returnObjects.clear();
+            quadTree.retrieve(returnObjects, area.set(x, y, width, height));
+            return returnObjects.size;
+        }
+    }
+
+    /*
+     * PointQuadTree over the centre of each entity. The query is grown
+     * by half its own size on each side, so for same sized entities it
+     * finds the centres of everything that could overlap.
+     */
+    class PointQuadTreeIndex implements ReplayIndex {
+
+        private final PointQuadTree pointQuadTree;
+        private final IntArray returnIds = new IntArray();
+        private final Rectangle area = new Rectangle();
+
+        public PointQuadTreeIndex(Rectangle bounds) {
+            pointQuadTree = new PointQuadTree(bounds);
+        }
+
+        public PointQuadTree getPointQuadTree() {
+            return pointQuadTree;
+        }
+
+        @Override
+        public void clear() {
+            pointQuadTree.clear();
+        }
+
+        @Override
+        public void insert(int id, float x, float y, float width, float height) {
+            pointQuadTree.insert(id, x + width / 2, y + height / 2);
+        }
+
+        @Override
+        public int query(float x, float y, float width, float height) {
+            returnIds.clear();
+            pointQuadTree.retrieve(returnIds, area.set(x - width / 2, y - height / 2, width * 2, height * 2));
+            return returnIds.size;
+        }
+    }
+}
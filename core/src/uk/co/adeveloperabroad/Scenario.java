@@ -0,0 +1,80 @@
+package uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+
+import java.util.Random;
+
+/*
+ * Particles bouncing around an area. Everything random comes from
+ * one seeded generator, so the same seed and the same time steps
+ * always give the same positions.
+ */
+public class Scenario {
+
+    private final Rectangle area;
+    private final Random random;
+    private final Array<Particle> particles;
+
+    /*
+     * Constructor
+     */
+    public Scenario(long seed, int numberParticles, float particleSize, Rectangle area) {
+        this.area = area;
+        random = new RandomXS128(seed);
+        particles = new Array<Particle>(numberParticles);
+
+        for (int i = 0; i < numberParticles; i++) {
+            float randomX = area.getX() + random.nextFloat() * area.getWidth();
+            float randomY = area.getY() + random.nextFloat() * area.getHeight();
+            particles.add(new Particle(randomX, randomY, particleSize, particleSize, i, random));
+        }
+    }
+
+    public Array<Particle> getParticles() {
+        return particles;
+    }
+
+    public Rectangle getArea() {
+        return area;
+    }
+
+    /*
+     * Move every particle on by delta seconds, changing direction at the edges
+     */
+    public void step(float delta) {
+        float minX = area.getX();
+        float minY = area.getY();
+        float maxX = minX + area.getWidth();
+        float maxY = minY + area.getHeight();
+
+        for (int i = 0; i < particles.size; i++) {
+            Particle particle = particles.get(i);
+
+            if (isAtEdge(particle)) {
+                particle.changeDirection();
+            }
+
+            particle.setX(MathUtils.clamp(particle.getX() + particle.velocityX * delta,
+                    minX,
+                    maxX - particle.getWidth())
+            );
+            particle.setY(MathUtils.clamp(particle.getY() + particle.velocityY * delta,
+                    minY,
+                    maxY - particle.getHeight()));
+        }
+    }
+
+    private boolean isAtEdge(Particle particle) {
+        Boolean atEdge = false;
+        if (particle.getX() + particle.getWidth() >= area.getX() + area.getWidth()
+                || particle.getX() <= area.getX()
+                || particle.getY()  <= area.getY()
+                || particle.getY() + particle.getHeight()  >= area.getY() + area.getHeight()) {
+            atEdge = true;
+        }
+        return atEdge;
+    }
+}
@@ -0,0 +1,127 @@
+package uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.LongArray;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/*
+ * Replays a trace written by TraceRecorder through a ReplayIndex.
+ * Each tick the index is rebuilt from the recorded positions and
+ * every entity queries its own box, both steps are timed.
+ */
+public class TracePlayer {
+
+    /*
+     * Per tick timings of a replay
+     */
+    public static class Result {
+
+        public final LongArray buildNanos = new LongArray();
+        public final LongArray queryNanos = new LongArray();
+        // summed so the queries can't be optimised away
+        public long candidates = 0;
+
+        public int getTicks() {
+            return buildNanos.size;
+        }
+
+        /*
+         * Nearest rank percentile, 100 gives the maximum
+         */
+        public static long percentile(LongArray nanos, float percent) {
+            if (nanos.size == 0) {
+                return 0;
+            }
+            long[] sorted = nanos.toArray();
+            Arrays.sort(sorted);
+            int rank = (int)Math.ceil(percent / 100 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+        }
+
+        @Override
+        public String toString() {
+            return getTicks() + " ticks, " + candidates + " candidates"
+                    + "\nbuild us p50 " + percentile(buildNanos, 50) / 1000
+                    + " p99 " + percentile(buildNanos, 99) / 1000
+                    + " max " + percentile(buildNanos, 100) / 1000
+                    + "\nquery us p50 " + percentile(queryNanos, 50) / 1000
+                    + " p99 " + percentile(queryNanos, 99) / 1000
+                    + " max " + percentile(queryNanos, 100) / 1000;
+        }
+    }
+
+    /*
+     * Replay every tick in the stream through the index
+     */
+    public static Result play(InputStream stream, ReplayIndex index) {
+        DataInputStream in = new DataInputStream(stream);
+        Result result = new Result();
+
+        try {
+            if (in.readInt() != TraceRecorder.MAGIC) {
+                throw new GdxRuntimeException("Not a particle trace");
+            }
+            int version = in.readInt();
+            if (version != TraceRecorder.VERSION) {
+                throw new GdxRuntimeException("Unsupported particle trace version: " + version);
+            }
+
+            int numberParticles = in.readInt();
+            float[] width = new float[numberParticles];
+            float[] height = new float[numberParticles];
+            float[] x = new float[numberParticles];
+            float[] y = new float[numberParticles];
+            for (int i = 0; i < numberParticles; i++) {
+                width[i] = in.readFloat();
+                height[i] = in.readFloat();
+            }
+
+            while (readTick(in, x, y)) {
+                long start = TimeUtils.nanoTime();
+                index.clear();
+                for (int i = 0; i < numberParticles; i++) {
+                    index.insert(i, x[i], y[i], width[i], height[i]);
+                }
+                long built = TimeUtils.nanoTime();
+                for (int i = 0; i < numberParticles; i++) {
+                    result.candidates += index.query(x[i], y[i], width[i], height[i]);
+                }
+                long queried = TimeUtils.nanoTime();
+
+                result.buildNanos.add(built - start);
+                result.queryNanos.add(queried - built);
+            }
+        }
+        catch (IOException e) {
+            throw new GdxRuntimeException("Couldn't read particle trace", e);
+        }
+        return result;
+    }
+
+    /*
+     * false once the trace has run out
+     */
+    private static boolean readTick(DataInputStream in, float[] x, float[] y) throws IOException {
+        if (x.length == 0) {
+            return false;
+        }
+        try {
+            x[0] = in.readFloat();
+        }
+        catch (EOFException e) {
+            return false;
+        }
+        y[0] = in.readFloat();
+        for (int i = 1; i < x.length; i++) {
+            x[i] = in.readFloat();
+            y[i] = in.readFloat();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+package uk.co.adeveloperabroad;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+ * Writes particle positions, tick by tick, to a compact binary trace
+ * that TracePlayer can replay through any ReplayIndex.
+ *
+ * Layout, big endian as DataOutputStream writes it:
+ *
+ *   header  magic, version, particle count
+ *   sizes   width, height for each particle
+ *   ticks   x, y for each particle, repeated until the end
+ */
+public class TraceRecorder {
+
+    public static final int MAGIC = 0x51545243;
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final int numberParticles;
+    private int ticks = 0;
+
+    /*
+     * Constructor, writes the header for these particles
+     */
+    public TraceRecorder(OutputStream stream, Array<Particle> particles) {
+        out = new DataOutputStream(stream);
+        numberParticles = particles.size;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numberParticles);
+            for (int i = 0; i < particles.size; i++) {
+                out.writeFloat(particles.get(i).getWidth());
+                out.writeFloat(particles.get(i).getHeight());
+            }
+        }
+        catch (IOException e) {
+            throw new GdxRuntimeException("Couldn't write trace header", e);
+        }
+    }
+
+    /*
+     * Record a scenario from its seed for a number of fixed time steps
+     */
+    public static void record(Scenario scenario, int ticks, float delta, OutputStream stream) {
+        TraceRecorder recorder = new TraceRecorder(stream, scenario.getParticles());
+        for (int i = 0; i < ticks; i++) {
+            scenario.step(delta);
+            recorder.record(scenario.getParticles());
+        }
+        recorder.close();
+    }
+
+    /*
+     * Write the current position of every particle as one tick
+     */
+    public void record(Array<Particle> particles) {
+        if (particles.size != numberParticles) {
+            throw new GdxRuntimeException("Trace has " + numberParticles + " particles, not " + particles.size);
+        }
+        try {
+            for (int i = 0; i < particles.size; i++) {
+                out.writeFloat(particles.get(i).getX());
+                out.writeFloat(particles.get(i).getY());
+            }
+        }
+        catch (IOException e) {
+            throw new GdxRuntimeException("Couldn't write trace tick " + ticks, e);
+        }
+        ticks++;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    public void close() {
+        try {
+            out.close();
+        }
+        catch (IOException e) {
+            throw new GdxRuntimeException("Couldn't close trace", e);
+        }
+    }
+}